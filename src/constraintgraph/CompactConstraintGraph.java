@@ -0,0 +1,225 @@
+package constraintgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import util.VisitedBits;
+import checkers.inference.model.Constraint;
+import constraintgraph.GraphBuilder.SubtypeDirection;
+
+/**
+ * An immutable ConstraintGraph in compressed sparse row layout. Vertices and
+ * edges are represented by int indices, and the edges incident to vertex v are
+ * adjacentEdges[offsets[v]] to adjacentEdges[offsets[v + 1] - 1].
+ *
+ * @author jianchu
+ *
+ */
+public class CompactConstraintGraph {
+
+    // vertex -> slot id
+    private final int[] slotIds;
+    // slot id -> vertex, -1 if the slot is not in the graph
+    private final int[] verticesOfSlot;
+    private final int[] offsets;
+    private final int[] adjacentEdges;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final int[] edgeConstraints;
+    private final BitSet subtypeEdges;
+    private final Constraint[] constraints;
+    // constraint -> index of the constraint in constraints
+    private final Map<Constraint, Integer> constraintIndices;
+    // constraint index -> the first edge of the constraint
+    private final int[] constraintEdges;
+    // visited vertices and queue of the searches of each thread, reused by
+    // all searches of the thread
+    private final ThreadLocal<VisitedBits> searchVisited = new ThreadLocal<VisitedBits>() {
+        @Override
+        protected VisitedBits initialValue() {
+            return new VisitedBits(slotIds.length);
+        }
+    };
+    private final ThreadLocal<int[]> searchQueue = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[slotIds.length];
+        }
+    };
+
+    protected CompactConstraintGraph(Collection<Vertex> verticies, Collection<Edge> edges) {
+        int maxSlotId = 0;
+        for (Vertex vertex : verticies) {
+            maxSlotId = Math.max(maxSlotId, vertex.getId());
+        }
+        this.slotIds = new int[verticies.size()];
+        this.verticesOfSlot = new int[maxSlotId + 1];
+        Arrays.fill(verticesOfSlot, -1);
+        int vertexIndex = 0;
+        for (Vertex vertex : verticies) {
+            slotIds[vertexIndex] = vertex.getId();
+            verticesOfSlot[vertex.getId()] = vertexIndex;
+            vertexIndex++;
+        }
+
+        this.edgeFrom = new int[edges.size()];
+        this.edgeTo = new int[edges.size()];
+        this.edgeConstraints = new int[edges.size()];
+        this.subtypeEdges = new BitSet(edges.size());
+        this.constraintIndices = new HashMap<>();
+        List<Constraint> constraintList = new ArrayList<>();
+        List<Integer> constraintEdgeList = new ArrayList<>();
+        int[] degrees = new int[slotIds.length + 1];
+        int edgeIndex = 0;
+        for (Edge edge : edges) {
+            edgeFrom[edgeIndex] = verticesOfSlot[edge.getFromVertex().getId()];
+            edgeTo[edgeIndex] = verticesOfSlot[edge.getToVertex().getId()];
+            if (edge instanceof SubtypeEdge) {
+                subtypeEdges.set(edgeIndex);
+            }
+            Integer constraintIndex = constraintIndices.get(edge.getConstraint());
+            if (constraintIndex == null) {
+                constraintIndex = constraintList.size();
+                constraintIndices.put(edge.getConstraint(), constraintIndex);
+                constraintList.add(edge.getConstraint());
+                constraintEdgeList.add(edgeIndex);
+            }
+            edgeConstraints[edgeIndex] = constraintIndex;
+            degrees[edgeFrom[edgeIndex]]++;
+            degrees[edgeTo[edgeIndex]]++;
+            edgeIndex++;
+        }
+        this.constraints = constraintList.toArray(new Constraint[constraintList.size()]);
+        this.constraintEdges = new int[constraintEdgeList.size()];
+        for (int i = 0; i < constraintEdges.length; i++) {
+            constraintEdges[i] = constraintEdgeList.get(i);
+        }
+
+        this.offsets = new int[slotIds.length + 1];
+        for (int v = 0; v < slotIds.length; v++) {
+            offsets[v + 1] = offsets[v] + degrees[v];
+        }
+        this.adjacentEdges = new int[offsets[slotIds.length]];
+        int[] next = Arrays.copyOf(offsets, slotIds.length);
+        for (int e = 0; e < edgeFrom.length; e++) {
+            adjacentEdges[next[edgeFrom[e]]++] = e;
+            adjacentEdges[next[edgeTo[e]]++] = e;
+        }
+    }
+
+    public int getNumberOfVertices() {
+        return slotIds.length;
+    }
+
+    public int getNumberOfEdges() {
+        return edgeFrom.length;
+    }
+
+    public int getSlotId(int vertex) {
+        return slotIds[vertex];
+    }
+
+    /**
+     * @return the vertex of the given slot id, or -1 if the slot is not in the
+     *         graph.
+     */
+    public int getVertex(int slotId) {
+        return slotId < verticesOfSlot.length ? verticesOfSlot[slotId] : -1;
+    }
+
+    /**
+     * @return the first edge of the given constraint, or -1 if the constraint
+     *         is not in the graph.
+     */
+    public int findEdge(Constraint constraint) {
+        Integer constraintIndex = constraintIndices.get(constraint);
+        return constraintIndex == null ? -1 : constraintEdges[constraintIndex];
+    }
+
+    public int getFromVertex(int edge) {
+        return edgeFrom[edge];
+    }
+
+    public int getToVertex(int edge) {
+        return edgeTo[edge];
+    }
+
+    public Constraint getConstraint(int edge) {
+        return constraints[edgeConstraints[edge]];
+    }
+
+    /**
+     * Constraints of each connected part of the graph.
+     *
+     * @return
+     */
+    public List<Set<Constraint>> getIndependentPath() {
+        List<Set<Constraint>> independentPaths = new ArrayList<>();
+        // one visited set for all parts, each vertex is in one part
+        VisitedBits visited = new VisitedBits(slotIds.length);
+        int[] queue = new int[slotIds.length];
+        for (int vertex = 0; vertex < slotIds.length; vertex++) {
+            if (!visited.get(vertex)) {
+                independentPaths.add(search(new int[] { vertex }, SubtypeDirection.UNDIRECTED, visited,
+                        queue));
+            }
+        }
+        return independentPaths;
+    }
+
+    /**
+     * Constraints of the edges that are reachable from the given vertices.
+     * Subtype edges are only followed in the given direction.
+     *
+     * @param sources
+     * @param subtypeDirection
+     * @return
+     */
+    public Set<Constraint> search(int[] sources, SubtypeDirection subtypeDirection) {
+        VisitedBits visited = searchVisited.get();
+        try {
+            return search(sources, subtypeDirection, visited, searchQueue.get());
+        } finally {
+            visited.clear();
+        }
+    }
+
+    private Set<Constraint> search(int[] sources, SubtypeDirection subtypeDirection, VisitedBits visited,
+            int[] queue) {
+        Set<Constraint> result = new HashSet<Constraint>();
+        int head = 0;
+        int tail = 0;
+        for (int source : sources) {
+            if (visited.add(source)) {
+                queue[tail++] = source;
+            }
+        }
+        while (head < tail) {
+            int current = queue[head++];
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int edge = adjacentEdges[i];
+                if (subtypeEdges.get(edge)) {
+                    if (subtypeDirection == SubtypeDirection.FROMSUBTYPE && current == edgeTo[edge]) {
+                        continue;
+                    } else if (subtypeDirection == SubtypeDirection.FROMSUPERTYPE
+                            && current == edgeFrom[edge]) {
+                        continue;
+                    }
+                }
+                result.add(constraints[edgeConstraints[edge]]);
+                int next = current == edgeTo[edge] ? edgeFrom[edge] : edgeTo[edge];
+                if (visited.add(next)) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -1,13 +1,14 @@
 package constraintgraph;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
@@ -24,15 +25,17 @@ public class ConstraintGraph {
 
     private Set<Edge> edges;
     private Set<Vertex> constantVerticies;
+    // constant paths may be added by several threads at once
     private Map<Vertex, Set<Constraint>> constantPath;
     private Map<Integer, Vertex> verticies;
     private List<Set<Constraint>> independentPath;
     private Collection<Constraint> missingConstraints = new HashSet<>();
+    private CompactConstraintGraph compactGraph;
 
     protected ConstraintGraph() {
         this.edges = new HashSet<Edge>();
         this.constantVerticies = new HashSet<Vertex>();
-        this.constantPath = new HashMap<Vertex, Set<Constraint>>();
+        this.constantPath = new ConcurrentHashMap<Vertex, Set<Constraint>>();
         this.verticies = new HashMap<Integer, Vertex>();
         this.independentPath = new LinkedList<Set<Constraint>>();
     }
@@ -43,11 +46,13 @@ public class ConstraintGraph {
         }
     }
 
-    protected List<Vertex> getVerticies() {
-        return new ArrayList<Vertex>(this.verticies.values());
+    protected Collection<Vertex> getVerticies() {
+        checkNotFrozen();
+        return Collections.unmodifiableCollection(this.verticies.values());
     }
 
     protected Set<Edge> getEdges() {
+        checkNotFrozen();
         return this.edges;
     }
 
@@ -63,11 +68,6 @@ public class ConstraintGraph {
         this.constantPath.put(vertex, constraints);
     }
 
-    protected void addEdgeToConstantPath(Vertex vertex, Constraint constraint) {
-        Set<Constraint> constrants = this.constantPath.get(vertex);
-        constrants.add(constraint);
-    }
-
     public List<Set<Constraint>> getIndependentPath() {
         return this.independentPath;
     }
@@ -81,8 +81,19 @@ public class ConstraintGraph {
             this.constantVerticies.add(vertex);
         }
     }
-    
+
+    /**
+     * Find the edge of the constraint by scanning all edges. A frozen graph
+     * has no Edge objects any more, its edges are found in constant time by
+     * findEdge of the compact graph.
+     *
+     * @param constraint
+     * @return the edge of the constraint, or null if it has none.
+     * @throws IllegalStateException
+     *             if the graph is frozen
+     */
     public Edge findEdge(Constraint constraint) {
+        checkNotFrozen();
         for (Edge edge : this.edges) {
             if (edge.getConstraint().equals(constraint)) {
                 return edge;
@@ -92,6 +103,7 @@ public class ConstraintGraph {
     }
 
     protected void createEdge(Slot slot1, Slot slot2, Constraint constraint) {
+        checkNotFrozen();
         Integer slot1Id = ((VariableSlot) slot1).getId();
         Integer slot2Id = ((VariableSlot) slot2).getId();
         Vertex vertex1;
@@ -122,6 +134,47 @@ public class ConstraintGraph {
         this.addEdge(edge);
     }
 
+    /**
+     * Convert this graph to a CompactConstraintGraph. The Vertex and Edge
+     * objects of this graph are released afterwards, only the constant
+     * vertices are kept as keys of the constant path.
+     *
+     * @return
+     */
+    protected CompactConstraintGraph freeze() {
+        if (this.compactGraph == null) {
+            this.compactGraph = new CompactConstraintGraph(this.verticies.values(), this.edges);
+            for (Vertex vertex : this.verticies.values()) {
+                vertex.clearEdges();
+            }
+            this.edges = new HashSet<Edge>();
+            this.verticies = new HashMap<Integer, Vertex>();
+        }
+        return this.compactGraph;
+    }
+
+    public boolean isFrozen() {
+        return this.compactGraph != null;
+    }
+
+    /**
+     * The Vertex and Edge objects are released by freeze, so they must not be
+     * read or added afterwards.
+     */
+    private void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new IllegalStateException("the graph is frozen, use its compact graph instead.");
+        }
+    }
+
+    /**
+     * @return the compact representation of this graph, or null if the graph
+     *         has not been frozen.
+     */
+    public CompactConstraintGraph getCompactGraph() {
+        return this.compactGraph;
+    }
+
     public Collection<Constraint> getMissingConstraints() {
         return this.missingConstraints;
     }
@@ -0,0 +1,61 @@
+package constraintgraph;
+
+/**
+ * Disjoint sets over int ids from 0 (inclusive) to size (exclusive), with path
+ * compression and union by rank.
+ *
+ * @author jianchu
+ *
+ */
+public class DisjointSet {
+
+    private final int[] parent;
+    private final byte[] rank;
+
+    public DisjointSet(int size) {
+        this.parent = new int[size];
+        this.rank = new byte[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+    }
+
+    public int find(int id) {
+        int root = id;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[id] != root) {
+            int next = parent[id];
+            parent[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merge the sets of id1 and id2.
+     *
+     * @return false if id1 and id2 are already in the same set.
+     */
+    public boolean union(int id1, int id2) {
+        int root1 = find(id1);
+        int root2 = find(id2);
+        if (root1 == root2) {
+            return false;
+        }
+        if (rank[root1] < rank[root2]) {
+            parent[root1] = root2;
+        } else if (rank[root1] > rank[root2]) {
+            parent[root2] = root1;
+        } else {
+            parent[root2] = root1;
+            rank[root1]++;
+        }
+        return true;
+    }
+
+    public int size() {
+        return parent.length;
+    }
+}
@@ -1,19 +1,35 @@
 package constraintgraph;
 
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.lang.model.element.AnnotationMirror;
 
+import util.VisitedBits;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.ExistentialConstraint;
 import checkers.inference.model.Slot;
 import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
 
 /**
  * ConstraintGraph Builder
@@ -27,8 +43,21 @@ public class GraphBuilder {
     private final Collection<Constraint> constraints;
     private final ConstraintGraph graph;
     private SubtypeDirection subtypeDirection = SubtypeDirection.UNDIRECTED;
-    private Map<Vertex, Set<Vertex>> vertexCache = new HashMap<>();
     private Collection<Constraint> missingConstraints = new HashSet<>();
+    private boolean useUnionFind = false;
+    private boolean useCompactGraph = false;
+    private boolean useStarEdges = false;
+    private boolean groupConstantsByValue = false;
+    private int graphThreads = 1;
+    private int maxSlotId = 0;
+    // visited slot ids of the constant path searches of each thread, reused
+    // by all searches of the thread
+    private final ThreadLocal<VisitedBits> searchVisited = new ThreadLocal<VisitedBits>() {
+        @Override
+        protected VisitedBits initialValue() {
+            return new VisitedBits(maxSlotId + 1);
+        }
+    };
     
     public GraphBuilder(Collection<Slot> slots, Collection<Constraint> constraints) {
         this.slots = slots;
@@ -44,18 +73,38 @@ public class GraphBuilder {
 
     public ConstraintGraph buildGraph() {
         for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                this.maxSlotId = Math.max(this.maxSlotId, getId(slot));
+            }
             if (constraint instanceof SubtypeConstraint) {
                 addSubtypeEdge((SubtypeConstraint) constraint);
             } else if (!(constraint instanceof ExistentialConstraint)) {
-                ArrayList<Slot> slots = new ArrayList<Slot>();
-                slots.addAll(constraint.getSlots());
-                addEdges(slots, constraint);
+                if (useStarEdges) {
+                    addStarEdges(constraint.getSlots(), constraint);
+                } else {
+                    ArrayList<Slot> slots = new ArrayList<Slot>();
+                    slots.addAll(constraint.getSlots());
+                    addEdges(slots, constraint);
+                }
             }
         }
 
         addConstant();
-        calculateIndependentPath();
+        if (useCompactGraph) {
+            this.graph.freeze();
+        }
+        if (useUnionFind) {
+            calculateIndependentPathByUnionFind();
+        } else if (this.graph.isFrozen()) {
+            for (Set<Constraint> independentPath : this.graph.getCompactGraph().getIndependentPath()) {
+                this.graph.addIndependentPath(independentPath);
+            }
+        } else {
+            calculateIndependentPath();
+        }
         calculateConstantPath();
+        // the searches are done, release the visited set of this thread
+        searchVisited.remove();
         // System.out.println(this.missingConstraint);
         // printEdges();
         // printGraph();
@@ -86,42 +135,168 @@ public class GraphBuilder {
         }
     }
 
+    /**
+     * Group constraints into independent sets with disjoint sets over slot
+     * ids. Two slots are in the same set if there is an edge between them in
+     * the graph, so this gives the same sets as the BFS over the graph without
+     * visiting any Vertex or Edge.
+     */
+    private void calculateIndependentPathByUnionFind() {
+        DisjointSet disjointSet = new DisjointSet(this.maxSlotId + 1);
+        for (Constraint constraint : constraints) {
+            List<Slot> slots = getEdgeSlots(constraint);
+            for (int i = 1; i < slots.size(); i++) {
+                disjointSet.union(getId(slots.get(0)), getId(slots.get(i)));
+            }
+        }
+
+        Map<Integer, Set<Constraint>> independentPaths = new LinkedHashMap<>();
+        for (Constraint constraint : constraints) {
+            List<Slot> slots = getEdgeSlots(constraint);
+            if (slots.isEmpty()) {
+                continue;
+            }
+            int root = disjointSet.find(getId(slots.get(0)));
+            Set<Constraint> independentPath = independentPaths.get(root);
+            if (independentPath == null) {
+                independentPath = new HashSet<Constraint>();
+                independentPaths.put(root, independentPath);
+            }
+            independentPath.add(constraint);
+        }
+        for (Set<Constraint> independentPath : independentPaths.values()) {
+            this.graph.addIndependentPath(independentPath);
+        }
+    }
+
+    /**
+     * Slots of the given constraint that are connected by edges of the graph.
+     * A constraint between constant slots only does not have any edge.
+     *
+     * @param constraint
+     * @return
+     */
+    private List<Slot> getEdgeSlots(Constraint constraint) {
+        if (constraint instanceof ExistentialConstraint) {
+            return Collections.emptyList();
+        }
+        List<Slot> slots = constraint instanceof SubtypeConstraint ? Arrays.asList(
+                ((SubtypeConstraint) constraint).getSubtype(),
+                ((SubtypeConstraint) constraint).getSupertype()) : constraint.getSlots();
+        for (Slot slot : slots) {
+            if (!(slot instanceof ConstantSlot)) {
+                return slots;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private int getId(Slot slot) {
+        return ((VariableSlot) slot).getId();
+    }
+
     private void calculateConstantPath() {
+        Collection<List<Vertex>> constantSources = getConstantSources();
+        if (this.graphThreads > 1 && constantSources.size() > 1) {
+            calculateConstantPathInParallel(constantSources);
+        } else {
+            for (List<Vertex> sources : constantSources) {
+                this.graph.addConstantPath(sources.get(0), searchConstantPath(sources));
+            }
+        }
         Collection<Constraint> alias = new HashSet<Constraint>(this.constraints);
-        for (Vertex vertex : this.graph.getConstantVerticies()) {
-            Set<Constraint> constantPathConstraints = BFSSearch(vertex);
+        for (Set<Constraint> constantPathConstraints : this.graph.getConstantPath().values()) {
             alias.removeAll(constantPathConstraints);
-            this.graph.addConstantPath(vertex, constantPathConstraints);
         }
         this.graph.SetMissingConstraints(alias);
         missingConstraints = alias;
-        // addMissingVertex(alias);
-    }
-
-    private void addMissingVertex(Collection<Constraint> alias) {
-        for (Constraint constraint : alias) {
-            Edge edge = this.graph.findEdge(constraint);
-            if (edge != null) {
-                Vertex from = edge.getFromVertex();
-                Vertex to = edge.getToVertex();
-                for (Map.Entry<Vertex, Set<Vertex>> entry : this.vertexCache.entrySet()) {
-                    Set<Vertex> vertexes = entry.getValue();
-                    if (vertexes.contains(from) || vertexes.contains(to)) {
-                        this.graph.addEdgeToConstantPath(entry.getKey(), constraint);
-                    }
+    }
+
+    /**
+     * The searches of different constant paths only read the graph, so they
+     * are run on a fork-join pool and each of them puts its constant path into
+     * the graph as soon as it is done.
+     *
+     * @param constantSources
+     */
+    private void calculateConstantPathInParallel(Collection<List<Vertex>> constantSources) {
+        ForkJoinPool pool = new ForkJoinPool(this.graphThreads);
+        List<Callable<Void>> searches = new ArrayList<Callable<Void>>(constantSources.size());
+        for (final List<Vertex> sources : constantSources) {
+            searches.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    graph.addConstantPath(sources.get(0), searchConstantPath(sources));
+                    return null;
                 }
+            });
+        }
+        try {
+            for (Future<Void> search : pool.invokeAll(searches)) {
+                search.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ErrorReporter.errorAbort("interrupted while computing constant paths.");
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            ErrorReporter.errorAbort("failed to compute constant paths: " + e.getCause());
+        } finally {
+            pool.shutdown();
         }
     }
 
-    private Set<Constraint> BFSSearch(Vertex vertex) {
+    private Set<Constraint> searchConstantPath(List<Vertex> sources) {
+        if (this.graph.isFrozen()) {
+            CompactConstraintGraph compactGraph = this.graph.getCompactGraph();
+            int[] sourceVertices = new int[sources.size()];
+            for (int i = 0; i < sourceVertices.length; i++) {
+                sourceVertices[i] = compactGraph.getVertex(sources.get(i).getId());
+            }
+            return compactGraph.search(sourceVertices, this.subtypeDirection);
+        } else {
+            return BFSSearch(sources);
+        }
+    }
+
+    /**
+     * The sources of each constant path. Each constant vertex is a source on
+     * its own, unless constants are grouped by value, in which case all
+     * constant vertices with the same annotation are the sources of one path,
+     * and the first of them is the key of the path.
+     *
+     * @return
+     */
+    private Collection<List<Vertex>> getConstantSources() {
+        if (groupConstantsByValue) {
+            Map<AnnotationMirror, List<Vertex>> groups = AnnotationUtils.createAnnotationMap();
+            for (Vertex vertex : this.graph.getConstantVerticies()) {
+                List<Vertex> group = groups.get(vertex.getValue());
+                if (group == null) {
+                    group = new ArrayList<Vertex>();
+                    groups.put(vertex.getValue(), group);
+                }
+                group.add(vertex);
+            }
+            return groups.values();
+        } else {
+            List<List<Vertex>> sources = new ArrayList<>();
+            for (Vertex vertex : this.graph.getConstantVerticies()) {
+                sources.add(Collections.singletonList(vertex));
+            }
+            return sources;
+        }
+    }
+
+    private Set<Constraint> BFSSearch(List<Vertex> sources) {
         Set<Constraint> constantPathConstraints = new HashSet<Constraint>();
-        Queue<Vertex> queue = new LinkedList<Vertex>();
-        queue.add(vertex);
-        Set<Vertex> visited = new HashSet<Vertex>();
+        Queue<Vertex> queue = new ArrayDeque<Vertex>(sources);
+        VisitedBits visited = searchVisited.get();
+        for (Vertex source : sources) {
+            visited.add(source.getId());
+        }
         while (!queue.isEmpty()) {
             Vertex current = queue.remove();
-            visited.add(current);
             for (Edge edge : current.getEdges()) {
                 if (edge instanceof SubtypeEdge) {
                     if (this.subtypeDirection.equals(SubtypeDirection.FROMSUBTYPE)
@@ -137,20 +312,12 @@ public class GraphBuilder {
                 Vertex next =  current.equals(edge.to) ? 
                         edge.getFromVertex() : edge.getToVertex();
 
-                Set<Vertex> cacheSet;
-                if (this.vertexCache.keySet().contains(vertex)) {
-                    cacheSet = vertexCache.get(vertex);
-                } else {
-                    cacheSet = new HashSet<Vertex>();
-                }
-                cacheSet.add(current);
-                cacheSet.add(next);
-                this.vertexCache.put(vertex, cacheSet);
-                if (!visited.contains(next)) {
+                if (visited.add(next.getId())) {
                     queue.add(next);
                 }
             }
         }
+        visited.clear();
         return constantPathConstraints;
     }
 
@@ -174,6 +341,38 @@ public class GraphBuilder {
         }
     }
     
+    /**
+     * Connect every other slot of the constraint to its first variable slot,
+     * which adds one edge less than the number of slots. There is no edge if
+     * all slots are constant slots.
+     *
+     * @param slots
+     * @param constraint
+     */
+    private void addStarEdges(List<Slot> slots, Constraint constraint) {
+        Slot hub = null;
+        for (Slot slot : slots) {
+            if (!(slot instanceof ConstantSlot)) {
+                hub = slot;
+                break;
+            }
+        }
+        if (hub == null) {
+            return;
+        }
+        // keep the order of slots in the constraint, as addEdges does
+        boolean afterHub = false;
+        for (Slot slot : slots) {
+            if (slot == hub) {
+                afterHub = true;
+            } else if (afterHub) {
+                this.graph.createEdge(hub, slot, constraint);
+            } else {
+                this.graph.createEdge(slot, hub, constraint);
+            }
+        }
+    }
+
     /**
      * The order of subtype and supertype matters, first one has to be subtype,
      * second one has to be supertype.
@@ -189,6 +388,57 @@ public class GraphBuilder {
         this.graph.createEdge(subtype, supertype, subtypeConstraint);
     }
 
+    /**
+     * Decompose constraints into independent sets with disjoint sets over slot
+     * ids instead of a BFS over the graph.
+     *
+     * @param useUnionFind
+     */
+    public void setUseUnionFind(boolean useUnionFind) {
+        this.useUnionFind = useUnionFind;
+    }
+
+    /**
+     * Freeze the graph into a CompactConstraintGraph once all edges are added,
+     * and run the searches over its int arrays.
+     *
+     * @param useCompactGraph
+     */
+    public void setUseCompactGraph(boolean useCompactGraph) {
+        this.useCompactGraph = useCompactGraph;
+    }
+
+    /**
+     * Add edges of constraints with more than two slots in a star, instead of
+     * the recursive addEdges.
+     *
+     * @param useStarEdges
+     */
+    public void setUseStarEdges(boolean useStarEdges) {
+        this.useStarEdges = useStarEdges;
+    }
+
+    /**
+     * Compute one constant path per distinct constant value, with one search
+     * from all the constant vertices of that value, instead of one constant
+     * path per constant vertex.
+     *
+     * @param groupConstantsByValue
+     */
+    public void setGroupConstantsByValue(boolean groupConstantsByValue) {
+        this.groupConstantsByValue = groupConstantsByValue;
+    }
+
+    /**
+     * Compute the constant paths on a fork-join pool with the given number of
+     * threads. The constant paths are computed one by one if it is 1.
+     *
+     * @param graphThreads
+     */
+    public void setGraphThreads(int graphThreads) {
+        this.graphThreads = graphThreads;
+    }
+
     public ConstraintGraph getGraph() {
         return this.graph;
     }
@@ -0,0 +1,104 @@
+package constraintgraph;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a directed graph over int vertices from 0
+ * (inclusive) to size (exclusive), computed by an iterative Tarjan's
+ * algorithm, so that long subtype chains do not overflow the stack.
+ *
+ * @author jianchu
+ *
+ */
+public class StronglyConnectedComponents {
+
+    // vertex -> component
+    private final int[] components;
+    private int numberOfComponents = 0;
+
+    /**
+     * @param size
+     * @param edgeFrom
+     *            the source vertex of each edge
+     * @param edgeTo
+     *            the target vertex of each edge
+     * @param numberOfEdges
+     *            the number of edges in edgeFrom and edgeTo
+     */
+    public StronglyConnectedComponents(int size, int[] edgeFrom, int[] edgeTo, int numberOfEdges) {
+        int[] offsets = new int[size + 1];
+        for (int e = 0; e < numberOfEdges; e++) {
+            offsets[edgeFrom[e] + 1]++;
+        }
+        for (int v = 0; v < size; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[numberOfEdges];
+        int[] next = Arrays.copyOf(offsets, size);
+        for (int e = 0; e < numberOfEdges; e++) {
+            targets[next[edgeFrom[e]]++] = edgeTo[e];
+        }
+
+        this.components = new int[size];
+        int[] index = new int[size];
+        int[] low = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] callVertices = new int[size];
+        int[] callEdges = new int[size];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int stackSize = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int callSize = 0;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callVertices[callSize] = root;
+            callEdges[callSize++] = offsets[root];
+
+            while (callSize > 0) {
+                int v = callVertices[callSize - 1];
+                if (callEdges[callSize - 1] < offsets[v + 1]) {
+                    int w = targets[callEdges[callSize - 1]++];
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callVertices[callSize] = w;
+                        callEdges[callSize++] = offsets[w];
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    callSize--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            components[w] = numberOfComponents;
+                        } while (w != v);
+                        numberOfComponents++;
+                    }
+                    if (callSize > 0) {
+                        int parent = callVertices[callSize - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    public int getComponent(int vertex) {
+        return components[vertex];
+    }
+
+    public int getNumberOfComponents() {
+        return numberOfComponents;
+    }
+}
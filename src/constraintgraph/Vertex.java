@@ -48,6 +48,10 @@ public class Vertex {
         }
     }
 
+    protected void clearEdges() {
+        this.edges = new HashSet<Edge>();
+    }
+
     public Slot getSlot() {
         return this.slot;
     }
@@ -3,6 +3,7 @@ package constraintsolver;
 import org.checkerframework.framework.type.QualifierHierarchy;
 
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +16,7 @@ import checkers.inference.model.Constraint;
 import checkers.inference.model.Serializer;
 import checkers.inference.model.Slot;
 import checkers.inference.model.VariableSlot;
+import util.StatisticPrinter.ComponentStatisticKey;
 
 /**
  * The back end of inference solver, the super type of concrete solver.
@@ -27,6 +29,20 @@ import checkers.inference.model.VariableSlot;
 // JLTODO: go through all uses of BackEnd and add type arguments
 public abstract class BackEnd<S, T> {
 
+    /**
+     * How solving the component of a back end ended.
+     */
+    public enum Outcome {
+        SOLVED,
+        UNSOLVABLE,
+        TIMEOUT,
+        CANCELLED,
+        ERROR;
+    }
+
+    // timeout of the solver if the ConstraintSolver has no time budget
+    public static final long DEFAULT_TIMEOUT_MS = 1000000;
+
     protected final Map<String, String> configuration;
     protected final Collection<Slot> slots;
     protected Collection<Constraint> constraints;
@@ -35,6 +51,15 @@ public abstract class BackEnd<S, T> {
     protected final Serializer<S, T> realSerializer;
     protected final Set<Integer> varSlotIds;
     protected final Lattice lattice;
+    protected SlotAliases slotAliases;
+    // threads that may serialize the constraints of this back end
+    protected int serializationThreads = 1;
+    protected long timeoutMs = DEFAULT_TIMEOUT_MS;
+    protected volatile boolean cancelled = false;
+    protected volatile Outcome outcome = Outcome.SOLVED;
+    // statistic of the component solved by this back end
+    protected final Map<ComponentStatisticKey, Object> componentStatistic = new EnumMap<ComponentStatisticKey, Object>(
+            ComponentStatisticKey.class);
 
     public BackEnd(Map<String, String> configuration, Collection<Slot> slots,
             Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
@@ -61,7 +86,8 @@ public abstract class BackEnd<S, T> {
     public void collectVarSlots(Constraint constraint) {
         for (Slot slot : constraint.getSlots()) {
             if (!(slot instanceof ConstantSlot)) {
-                this.varSlotIds.add(((VariableSlot) slot).getId());
+                int id = ((VariableSlot) slot).getId();
+                this.varSlotIds.add(slotAliases == null ? id : slotAliases.getRepresentative(id));
             }
         }
     }
@@ -78,7 +104,61 @@ public abstract class BackEnd<S, T> {
         return this.processingEnvironment;
     }
     
+    /**
+     * Let the back end serialize its constraints with the given number of
+     * threads, if it supports it. Only the MaxSat back end does.
+     *
+     * @param serializationThreads
+     */
+    public void setSerializationThreads(int serializationThreads) {
+        this.serializationThreads = serializationThreads;
+    }
+
+    /**
+     * @param timeoutMs
+     *            the time the solver of this back end may take, in
+     *            milliseconds
+     */
+    public void setTimeout(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Stop solving as soon as possible, e.g. because another component is not
+     * solvable. Sub-class back end may override this method to stop its
+     * running solver.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return how solving ended, SOLVED unless the back end found out
+     *         otherwise.
+     */
+    public Outcome getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * @return the statistic that this back end records about its component,
+     *         in addition to the statistic recorded by the scheduler.
+     */
+    public Map<ComponentStatisticKey, Object> getComponentStatistic() {
+        return this.componentStatistic;
+    }
+
     public void setConstraint(Collection<Constraint> constraints) {
         this.constraints = constraints;
     }
+
+    /**
+     * Solve each variable slot as the representative of its aliases. The
+     * serializer of this back end has to encode slots the same way.
+     *
+     * @param slotAliases
+     */
+    public void setSlotAliases(SlotAliases slotAliases) {
+        this.slotAliases = slotAliases;
+    }
 }
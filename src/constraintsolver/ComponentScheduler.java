@@ -0,0 +1,246 @@
+package constraintsolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import util.StatisticPrinter;
+import util.StatisticPrinter.ComponentStatisticKey;
+import util.StatisticPrinter.StatisticKey;
+
+/**
+ * Decides how the back ends of independent components are run. The solution
+ * of each component is handed to a SolutionMerger as soon as the component is
+ * solved, and the scheduler drops its references to the back end, so that the
+ * clauses and solver of the back end can be collected right away.
+ *
+ * If the solver has a deadline, the time until the deadline is split across
+ * the components by a SolveBudget, and with fail fast the components that are
+ * not done are cancelled once a component turns out to be not solvable.
+ *
+ * @author jianchu
+ *
+ */
+public abstract class ComponentScheduler {
+
+    // deadline of all components in milliseconds since the epoch, 0 if there
+    // is none
+    protected long deadline = 0;
+    // stop solving the other components once a component is not solvable
+    protected boolean failFast = false;
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Solve all the given back ends and merge their solutions into merger. The
+     * elements of backEnds are set to null once they are handed to a task.
+     *
+     * @param backEnds
+     * @param merger
+     */
+    public abstract void schedule(List<BackEnd<?, ?>> backEnds, SolutionMerger merger)
+            throws InterruptedException, ExecutionException;
+
+    /**
+     * The number of constraints of a back end is used as the estimated cost of
+     * solving it.
+     *
+     * @param backEnd
+     * @return
+     */
+    protected long estimateCost(BackEnd<?, ?> backEnd) {
+        Collection<?> constraints = backEnd.getConstraints();
+        return constraints == null ? 0 : constraints.size();
+    }
+
+    /**
+     * @param backEnds
+     * @param parallelism
+     *            the number of back ends that are solved at the same time
+     * @return the budget that splits the time until the deadline across the
+     *         given back ends, or null if there is no deadline.
+     */
+    protected SolveBudget createBudget(List<BackEnd<?, ?>> backEnds, int parallelism) {
+        if (deadline <= 0) {
+            return null;
+        }
+        long totalCost = 0;
+        for (BackEnd<?, ?> backEnd : backEnds) {
+            totalCost += estimateCost(backEnd);
+        }
+        return new SolveBudget(deadline, totalCost, parallelism);
+    }
+
+    /**
+     * @param task
+     * @return true if the other components should be cancelled because of the
+     *         outcome of the given task.
+     */
+    protected boolean shouldFailFast(ComponentTask task) {
+        if (failFast && task.getOutcome() == BackEnd.Outcome.UNSOLVABLE) {
+            System.out.println("Component " + task.getComponent()
+                    + " is not solvable, cancelling the other components.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indices of the given back ends, ordered from the most expensive one to
+     * the cheapest one.
+     *
+     * @param backEnds
+     * @return
+     */
+    protected List<Integer> largestFirst(List<BackEnd<?, ?>> backEnds) {
+        final long[] costs = new long[backEnds.size()];
+        List<Integer> order = new ArrayList<Integer>(backEnds.size());
+        for (int i = 0; i < backEnds.size(); i++) {
+            costs[i] = estimateCost(backEnds.get(i));
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(costs[o2], costs[o1]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * Solves one component and records its queue wait time, solving time,
+     * timeout and outcome.
+     */
+    protected static class ComponentTask implements Callable<Map<Integer, AnnotationMirror>> {
+
+        private final int component;
+        private volatile BackEnd<?, ?> backEnd;
+        private final long cost;
+        private final long enqueued;
+        private final SolveBudget budget;
+        private volatile boolean cancelled = false;
+        private volatile BackEnd.Outcome outcome;
+
+        /**
+         * @param component
+         * @param backEnd
+         * @param cost
+         *            the estimated cost of the back end
+         * @param enqueued
+         * @param budget
+         *            the budget the timeout of the back end is taken from, or
+         *            null if there is no deadline
+         */
+        protected ComponentTask(int component, BackEnd<?, ?> backEnd, long cost, long enqueued,
+                SolveBudget budget) {
+            this.component = component;
+            this.backEnd = backEnd;
+            this.cost = cost;
+            this.enqueued = enqueued;
+            this.budget = budget;
+        }
+
+        /**
+         * Solve the component. A back end that throws does not stop the
+         * scheduler, its component ends with outcome ERROR and no solution.
+         */
+        @Override
+        public Map<Integer, AnnotationMirror> call() {
+            long solvingStart = System.currentTimeMillis();
+            BackEnd<?, ?> backEnd = this.backEnd;
+            StatisticPrinter.recordComponent(component, ComponentStatisticKey.CONSTRAINT_SIZE,
+                    (long) backEnd.getConstraints().size());
+            StatisticPrinter.recordComponent(component, ComponentStatisticKey.BACK_END,
+                    backEnd.getClass().getSimpleName());
+            Map<Integer, AnnotationMirror> result = Collections.emptyMap();
+            long timeout = budget == null ? BackEnd.DEFAULT_TIMEOUT_MS : budget.allocate(cost);
+            StatisticPrinter.recordComponent(component, ComponentStatisticKey.TIMEOUT, timeout);
+            if (cancelled) {
+                outcome = BackEnd.Outcome.CANCELLED;
+            } else if (timeout <= 0) {
+                outcome = BackEnd.Outcome.TIMEOUT;
+            } else {
+                backEnd.setTimeout(timeout);
+                try {
+                    result = backEnd.solve();
+                    outcome = cancelled && backEnd.getOutcome() != BackEnd.Outcome.SOLVED ? BackEnd.Outcome.CANCELLED
+                            : backEnd.getOutcome();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    outcome = BackEnd.Outcome.ERROR;
+                }
+                for (Map.Entry<ComponentStatisticKey, Object> entry : backEnd.getComponentStatistic()
+                        .entrySet()) {
+                    StatisticPrinter.recordComponent(component, entry.getKey(), entry.getValue());
+                }
+            }
+            // saving memory of JVM...
+            this.backEnd = null;
+            long solvingEnd = System.currentTimeMillis();
+            StatisticPrinter.recordComponent(component, ComponentStatisticKey.QUEUE_WAIT_TIME,
+                    (solvingStart - enqueued));
+            StatisticPrinter.recordComponent(component, ComponentStatisticKey.SOLVING_TIME,
+                    (solvingEnd - solvingStart));
+            recordOutcome(component, outcome);
+            return result;
+        }
+
+        /**
+         * Stop the back end of this task if it is running, or skip it if it
+         * has not started yet.
+         */
+        public void cancel() {
+            this.cancelled = true;
+            BackEnd<?, ?> backEnd = this.backEnd;
+            if (backEnd != null) {
+                backEnd.cancel();
+            }
+        }
+
+        public int getComponent() {
+            return component;
+        }
+
+        /**
+         * @return how solving the component ended, or null if it has not
+         *         ended yet.
+         */
+        public BackEnd.Outcome getOutcome() {
+            return outcome;
+        }
+    }
+
+    protected static void recordOutcome(int component, BackEnd.Outcome outcome) {
+        StatisticPrinter.recordComponent(component, ComponentStatisticKey.OUTCOME, outcome);
+        switch (outcome) {
+        case UNSOLVABLE:
+            StatisticPrinter.record(StatisticKey.UNSOLVABLE_COMPONENTS_SIZE, (long) 1);
+            break;
+        case TIMEOUT:
+            StatisticPrinter.record(StatisticKey.TIMEOUT_COMPONENTS_SIZE, (long) 1);
+            break;
+        case CANCELLED:
+            StatisticPrinter.record(StatisticKey.CANCELLED_COMPONENTS_SIZE, (long) 1);
+            break;
+        case ERROR:
+            StatisticPrinter.record(StatisticKey.ERROR_COMPONENTS_SIZE, (long) 1);
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package constraintsolver;
 
 import java.lang.reflect.Constructor;
 
+import maxsatbackend.MaxSatSerializer;
+
 import checkers.inference.model.CombVariableSlot;
 import checkers.inference.model.CombineConstraint;
 import checkers.inference.model.ComparableConstraint;
@@ -34,7 +36,8 @@ public class ConstraintSerializer<S, T> implements Serializer<S, T> {
     public ConstraintSerializer(String backEndType, Lattice lattice) {
         this.lattice = lattice;
         try {
-            if (backEndType.equals("maxsatbackend.Lingeling")) {
+            if (backEndType.equals("maxsatbackend.Lingeling")
+                    || backEndType.equals("maxsatbackend.External")) {
                 backEndType = "maxsatbackend.MaxSat";
             }
             Class<?> serializerClass = Class.forName(backEndType + "Serializer");
@@ -45,6 +48,18 @@ public class ConstraintSerializer<S, T> implements Serializer<S, T> {
         }
     }
 
+    /**
+     * Let the real serializer encode slots as the representatives of their
+     * aliases. Only the MaxSat serializer supports slot aliases.
+     *
+     * @param slotAliases
+     */
+    public void setSlotAliases(SlotAliases slotAliases) {
+        if (realSerializer instanceof MaxSatSerializer) {
+            ((MaxSatSerializer) realSerializer).setSlotAliases(slotAliases);
+        }
+    }
+
     @Override
     public T serialize(SubtypeConstraint constraint) {
         return realSerializer.serialize(constraint);
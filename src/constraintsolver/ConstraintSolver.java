@@ -6,16 +6,10 @@ import org.checkerframework.javacutil.ErrorReporter;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
@@ -23,7 +17,6 @@ import javax.lang.model.element.AnnotationMirror;
 import util.PrintUtils;
 import util.StatisticPrinter;
 import util.StatisticPrinter.StatisticKey;
-import checkers.inference.DefaultInferenceSolution;
 import checkers.inference.InferenceSolution;
 import checkers.inference.InferenceSolver;
 import checkers.inference.model.Constraint;
@@ -31,6 +24,7 @@ import checkers.inference.model.Serializer;
 import checkers.inference.model.Slot;
 import constraintgraph.ConstraintGraph;
 import constraintgraph.GraphBuilder;
+import constraintgraph.GraphBuilder.SubtypeDirection;
 
 /**
  * The default solver that could be called if there is no view adaptation
@@ -46,26 +40,56 @@ public class ConstraintSolver implements InferenceSolver {
     public boolean useGraph;
     public boolean solveInParallel;
     public boolean collectStatistic;
+    public int solverThreads;
+    public boolean useUnionFind;
+    public boolean useCompactGraph;
+    public boolean useStarEdges;
+    public boolean parallelGraph;
+    public boolean parallelSerialization;
+    public boolean collapseEqualities;
+    public boolean collapseSubtypeCycles;
+    public int enumerationThreshold;
+    // components with at least this many constraints are solved by sat4j and
+    // an external solver at the same time, 0 if no component is
+    public int portfolioThreshold;
+    // time budget of the whole solve call in milliseconds, 0 if there is none
+    public long timeBudget;
+    public boolean failFast;
     protected Lattice lattice;
     protected ConstraintGraph constraintGraph;
+    protected SlotAliases slotAliases;
 
     // timing variables:
     private long graphBuildingStart;
     private long graphBuildingEnd;
+    // deadline of the solve call in milliseconds since the epoch, 0 if there
+    // is no time budget
+    protected long deadline;
 
     @Override
     public InferenceSolution solve(Map<String, String> configuration, Collection<Slot> slots,
             Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
             ProcessingEnvironment processingEnvironment) {
         InferenceSolution solution = null;
+        final long solveStart = System.currentTimeMillis();
 
         try {
             configure(configuration);
+            this.deadline = timeBudget > 0 ? solveStart + timeBudget : 0;
             // record constraint size
             StatisticPrinter.record(StatisticKey.CONSTRAINT_SIZE, (long) constraints.size());
             // record slot size
             StatisticPrinter.record(StatisticKey.SLOTS_SIZE, (long) slots.size());
             configureLattice(qualHierarchy);
+            if (collapseEqualities || collapseSubtypeCycles) {
+                this.slotAliases = new SlotAliases(constraints, collapseEqualities, collapseSubtypeCycles);
+                StatisticPrinter.record(StatisticKey.COLLAPSED_SLOTS_SIZE,
+                        (long) slotAliases.getEqualitySlots());
+                StatisticPrinter.record(StatisticKey.CYCLE_COLLAPSED_SLOTS_SIZE,
+                        (long) slotAliases.getCycleSlots());
+                StatisticPrinter.record(StatisticKey.COLLAPSED_CONSTRAINTS_SIZE,
+                        (long) slotAliases.getCollapsedConstraints());
+            }
             Serializer<?, ?> defaultSerializer = createSerializer(backEndType, lattice);
             if (useGraph) {
                 this.graphBuildingStart = System.currentTimeMillis();
@@ -83,6 +107,7 @@ public class ConstraintSolver implements InferenceSolver {
             if (collectStatistic) {
                 PrintUtils.printStatistic(StatisticPrinter.getStatistic());
                 PrintUtils.writeStatistic(StatisticPrinter.getStatistic());
+                PrintUtils.writeComponentStatistic(StatisticPrinter.getComponentStatistic());
             }
         }
 
@@ -102,23 +127,49 @@ public class ConstraintSolver implements InferenceSolver {
     }
 
     protected ConstraintGraph generateGraph(Collection<Slot> slots, Collection<Constraint> constraints) {
-        GraphBuilder graphBuilder = new GraphBuilder(slots, constraints);
+        GraphBuilder graphBuilder = createGraphBuilder(slots, constraints, SubtypeDirection.UNDIRECTED);
         ConstraintGraph constraintGraph = graphBuilder.buildGraph();
         return constraintGraph;
     }
 
+    /**
+     * Create a GraphBuilder that is configured by the solver arguments.
+     */
+    protected GraphBuilder createGraphBuilder(Collection<Slot> slots, Collection<Constraint> constraints,
+            SubtypeDirection subtypeDirection) {
+        GraphBuilder graphBuilder = new GraphBuilder(slots, constraints, subtypeDirection);
+        graphBuilder.setUseUnionFind(useUnionFind);
+        graphBuilder.setUseCompactGraph(useCompactGraph);
+        graphBuilder.setUseStarEdges(useStarEdges);
+        graphBuilder.setGraphThreads(parallelGraph ? solverThreads : 1);
+        return graphBuilder;
+    }
+
     private void configure(Map<String, String> configuration) {
         String backEndName = configuration.get("backEndType");
         String useGraph = configuration.get("useGraph");
         String solveInParallel = configuration.get("solveInParallel");
         String collectStatistic = configuration.get("collectStatistic");
+        String solverThreads = configuration.get("solverThreads");
+        String useUnionFind = configuration.get("useUnionFind");
+        String useCompactGraph = configuration.get("useCompactGraph");
+        String useStarEdges = configuration.get("useStarEdges");
+        String parallelGraph = configuration.get("parallelGraph");
+        String parallelSerialization = configuration.get("parallelSerialization");
+        String collapseEqualities = configuration.get("collapseEqualities");
+        String collapseSubtypeCycles = configuration.get("collapseSubtypeCycles");
+        String enumerationThreshold = configuration.get("enumerationThreshold");
+        String portfolioThreshold = configuration.get("portfolioThreshold");
+        String timeBudget = configuration.get("timeBudget");
+        String failFast = configuration.get("failFast");
         if (backEndName == null) {
             this.backEndType = "maxsatbackend.MaxSat";
             // TODO: warning
             // ErrorReporter.errorAbort("not found back end.");
         } else {
             if (backEndName.equals("maxsatbackend.MaxSat") || backEndName.equals("logiqlbackend.LogiQL")
-                    || backEndName.equals("General") || backEndName.equals("maxsatbackend.Lingeling")) {
+                    || backEndName.equals("General") || backEndName.equals("maxsatbackend.Lingeling")
+                    || backEndName.equals("maxsatbackend.External")) {
                 this.backEndType = backEndName;
             } else {
                 ErrorReporter.errorAbort("back end is not implemented yet.");
@@ -145,10 +196,125 @@ public class ConstraintSolver implements InferenceSolver {
             this.collectStatistic = true;
         }
 
+        if (useUnionFind == null || useUnionFind.equals("false")) {
+            this.useUnionFind = false;
+        } else if (useUnionFind.equals("true")) {
+            this.useUnionFind = true;
+        }
+
+        if (useCompactGraph == null || useCompactGraph.equals("false")) {
+            this.useCompactGraph = false;
+        } else if (useCompactGraph.equals("true")) {
+            this.useCompactGraph = true;
+        }
+
+        if (useStarEdges == null || useStarEdges.equals("false")) {
+            this.useStarEdges = false;
+        } else if (useStarEdges.equals("true")) {
+            this.useStarEdges = true;
+        }
+
+        if (parallelGraph == null || parallelGraph.equals("false")) {
+            this.parallelGraph = false;
+        } else if (parallelGraph.equals("true")) {
+            this.parallelGraph = true;
+        }
+
+        if (parallelSerialization == null || parallelSerialization.equals("false")) {
+            this.parallelSerialization = false;
+        } else if (parallelSerialization.equals("true")) {
+            this.parallelSerialization = true;
+        }
+
+        // only the MaxSat serializer encodes slots as their representatives
+        boolean supportsAliases = this.backEndType.equals("maxsatbackend.MaxSat")
+                || this.backEndType.equals("maxsatbackend.Lingeling")
+                || this.backEndType.equals("maxsatbackend.External");
+        if (!supportsAliases || collapseEqualities == null || collapseEqualities.equals("false")) {
+            this.collapseEqualities = false;
+        } else if (collapseEqualities.equals("true")) {
+            this.collapseEqualities = true;
+        }
+
+        if (!supportsAliases || collapseSubtypeCycles == null || collapseSubtypeCycles.equals("false")) {
+            this.collapseSubtypeCycles = false;
+        } else if (collapseSubtypeCycles.equals("true")) {
+            this.collapseSubtypeCycles = true;
+        }
+
+        if (solverThreads == null) {
+            this.solverThreads = Runtime.getRuntime().availableProcessors();
+        } else {
+            try {
+                this.solverThreads = Integer.parseInt(solverThreads);
+            } catch (NumberFormatException e) {
+                this.solverThreads = 0;
+            }
+            if (this.solverThreads <= 0) {
+                ErrorReporter.errorAbort("solverThreads should be a positive integer: " + solverThreads);
+            }
+        }
+
+        if (enumerationThreshold == null) {
+            this.enumerationThreshold = 0;
+        } else {
+            try {
+                this.enumerationThreshold = Integer.parseInt(enumerationThreshold);
+            } catch (NumberFormatException e) {
+                this.enumerationThreshold = -1;
+            }
+            if (this.enumerationThreshold < 0) {
+                ErrorReporter.errorAbort("enumerationThreshold should be a non-negative integer: "
+                        + enumerationThreshold);
+            }
+        }
+
+        if (portfolioThreshold == null) {
+            this.portfolioThreshold = 0;
+        } else {
+            try {
+                this.portfolioThreshold = Integer.parseInt(portfolioThreshold);
+            } catch (NumberFormatException e) {
+                this.portfolioThreshold = -1;
+            }
+            if (this.portfolioThreshold < 0) {
+                ErrorReporter.errorAbort("portfolioThreshold should be a non-negative integer: "
+                        + portfolioThreshold);
+            }
+            // without a command the external engine of every portfolio
+            // component would be encoded only to fail
+            if (this.portfolioThreshold > 0 && configuration.get("externalCommand") == null
+                    && configuration.get("externalSatCommand") == null) {
+                ErrorReporter.errorAbort("portfolioThreshold needs the externalCommand solver argument.");
+            }
+        }
+
+        if (timeBudget == null) {
+            this.timeBudget = 0;
+        } else {
+            try {
+                this.timeBudget = Long.parseLong(timeBudget);
+            } catch (NumberFormatException e) {
+                this.timeBudget = 0;
+            }
+            if (this.timeBudget <= 0) {
+                ErrorReporter.errorAbort("timeBudget should be a positive number of milliseconds: "
+                        + timeBudget);
+            }
+        }
+
+        if (failFast == null || failFast.equals("false")) {
+            this.failFast = false;
+        } else if (failFast.equals("true")) {
+            this.failFast = true;
+        }
+
         // sanitize the configuration if needs
         sanitizeConfiguration();
         System.out.println("configuration: \nback end type: " + this.backEndType + "; \nuseGraph: "
-                + this.useGraph + "; \nsolveInParallel: " + this.solveInParallel + ".");
+                + this.useGraph + "; \nsolveInParallel: " + this.solveInParallel + "; \nsolverThreads: "
+                + this.solverThreads + "; \ncollapseEqualities: " + this.collapseEqualities
+                + "; \ncollapseSubtypeCycles: " + this.collapseSubtypeCycles + ".");
     }
 
     protected void configureLattice(QualifierHierarchy qualHierarchy) {
@@ -174,68 +340,50 @@ public class ConstraintSolver implements InferenceSolver {
                     qualHierarchy, processingEnvironment, lattice, defaultSerializer));
         }
         constraintGraph = null;
-        return mergeSolution(solve(backEnds));
+        return solve(backEnds);
     }
 
-    protected List<Map<Integer, AnnotationMirror>> solve(List<BackEnd<?, ?>> backEnds) {
-        List<Map<Integer, AnnotationMirror>> inferenceSolutionMaps = new LinkedList<Map<Integer, AnnotationMirror>>();
+    protected InferenceSolution solve(List<BackEnd<?, ?>> backEnds) {
+        SolutionMerger merger = createSolutionMerger();
 
         if (backEnds.size() > 0) {
-            if (this.solveInParallel) {
-                try {
-                    inferenceSolutionMaps = solveInparallel(backEnds);
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                inferenceSolutionMaps = solveInSequential(backEnds);
+            try {
+                ComponentScheduler scheduler = createScheduler();
+                scheduler.setDeadline(deadline);
+                scheduler.setFailFast(failFast);
+                scheduler.schedule(backEnds, merger);
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
             }
         }
-        return inferenceSolutionMaps;
-    }
-
-    protected List<Map<Integer, AnnotationMirror>> solveInSequential(List<BackEnd<?, ?>> backEnds) {
-        List<Map<Integer, AnnotationMirror>> solutions = new ArrayList<>();
-
-        for (final BackEnd backEnd : backEnds) {
-            solutions.add(backEnd.solve());
-        }
-        return solutions;
+        return merger.getSolution();
     }
 
-    protected List<Map<Integer, AnnotationMirror>> solveInparallel(List<BackEnd<?, ?>> backEnds)
-            throws InterruptedException, ExecutionException {
-
-        ExecutorService service = Executors.newFixedThreadPool(32);
-
-        List<Future<Map<Integer, AnnotationMirror>>> futures = new ArrayList<Future<Map<Integer, AnnotationMirror>>>();
-
-        for (final BackEnd backEnd : backEnds) {
-            Callable<Map<Integer, AnnotationMirror>> callable = new Callable<Map<Integer, AnnotationMirror>>() {
-                @Override
-                public Map<Integer, AnnotationMirror> call() throws Exception {
-                    return backEnd.solve();
-                }
-            };
-            futures.add(service.submit(callable));
-        }
-        service.shutdown();
-
-        List<Map<Integer, AnnotationMirror>> solutions = new ArrayList<>();
-        for (Future<Map<Integer, AnnotationMirror>> future : futures) {
-            solutions.add(future.get());
+    /**
+     * Create the scheduler that runs the back ends of independent components.
+     * Sub-class solver may override this method to plug in its own scheduling
+     * policy.
+     */
+    protected ComponentScheduler createScheduler() {
+        if (this.solveInParallel) {
+            return new WorkStealingScheduler(this.solverThreads);
+        } else {
+            return new SequentialScheduler();
         }
-        return solutions;
     }
 
-    protected InferenceSolution mergeSolution(List<Map<Integer, AnnotationMirror>> inferenceSolutionMaps) {
-        Map<Integer, AnnotationMirror> result = new HashMap<>();
-        for (Map<Integer, AnnotationMirror> inferenceSolutionMap : inferenceSolutionMaps) {
-            result.putAll(inferenceSolutionMap);
-        }
-        result = inferMissingConstraint(result);
-        PrintUtils.printResult(result);
-        return new DefaultInferenceSolution(result);
+    /**
+     * Create the merger that combines the solutions of independent components.
+     * Sub-class solver may override this method if its components are not
+     * solved in the lattice of the whole type system.
+     */
+    protected SolutionMerger createSolutionMerger() {
+        return new LatticeSolutionMerger(lattice) {
+            @Override
+            protected Map<Integer, AnnotationMirror> complete(Map<Integer, AnnotationMirror> result) {
+                return inferMissingConstraint(result);
+            }
+        };
     }
 
     protected Map<Integer, AnnotationMirror> inferMissingConstraint(Map<Integer, AnnotationMirror> result) {
@@ -246,6 +394,18 @@ public class ConstraintSolver implements InferenceSolver {
             Collection<Slot> slots, Collection<Constraint> constraints,
             QualifierHierarchy qualHierarchy, ProcessingEnvironment processingEnvironment,
             Lattice lattice, Serializer<?, ?> defaultSerializer) {
+        if (constraints.size() <= enumerationThreshold
+                && LatticeEnumerationBackEnd.canSolve(constraints, lattice)) {
+            StatisticPrinter.record(StatisticKey.ENUMERATION_COMPONENTS_SIZE, (long) 1);
+            return new LatticeEnumerationBackEnd(configuration, slots, constraints, qualHierarchy,
+                    processingEnvironment, lattice);
+        }
+        StatisticPrinter.record(StatisticKey.BACK_END_COMPONENTS_SIZE, (long) 1);
+        if (portfolioThreshold > 0 && constraints.size() >= portfolioThreshold
+                && backEndType.equals("maxsatbackend.MaxSat")) {
+            StatisticPrinter.record(StatisticKey.PORTFOLIO_COMPONENTS_SIZE, (long) 1);
+            backEndType = "maxsatbackend.Portfolio";
+        }
         BackEnd backEnd = null;
         try {
             Class<?> backEndClass = Class.forName(backEndType + "BackEnd");
@@ -254,6 +414,8 @@ public class ConstraintSolver implements InferenceSolver {
                     Serializer.class, Lattice.class);
             backEnd = (BackEnd) cons.newInstance(configuration, slots, constraints, qualHierarchy,
                     processingEnvironment, defaultSerializer, lattice);
+            backEnd.setSlotAliases(slotAliases);
+            backEnd.setSerializationThreads(parallelSerialization ? solverThreads : 1);
         } catch (Exception e) {
             e.printStackTrace();
             ErrorReporter.errorAbort("back end is not implemented yet.");
@@ -263,12 +425,19 @@ public class ConstraintSolver implements InferenceSolver {
     }
 
     protected Serializer<?, ?> createSerializer(String value, Lattice lattice) {
-        return new ConstraintSerializer<>(value, lattice);
+        ConstraintSerializer<?, ?> serializer = new ConstraintSerializer<>(value, lattice);
+        if (slotAliases != null) {
+            serializer.setSlotAliases(slotAliases);
+        }
+        return serializer;
     }
 
     protected InferenceSolution solve() {
-        Map<Integer, AnnotationMirror> result = realBackEnd.solve();
-        PrintUtils.printResult(result);
-        return new DefaultInferenceSolution(result);
+        SolutionMerger merger = new LatticeSolutionMerger(lattice);
+        if (deadline > 0) {
+            realBackEnd.setTimeout(Math.max(deadline - System.currentTimeMillis(), 1));
+        }
+        merger.merge(realBackEnd.solve());
+        return merger.getSolution();
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package constraintsolver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Solves a small component by trying the types of the lattice for each of its
+ * variable slots, without building any clause. It gives the answers of the
+ * MaxSat back end: constraints that the MaxSat serializer encodes to no
+ * clause, e.g. comparable and combine constraints, are ignored, and among the
+ * assignments that satisfy all other constraints, the one that satisfies the
+ * most preference constraints is chosen.
+ *
+ * @author jianchu
+ *
+ */
+public class LatticeEnumerationBackEnd extends BackEnd<Void, Void> {
+
+    // upper bound of the assignments that are tried for one component
+    private static final long MAX_ASSIGNMENTS = 1 << 16;
+
+    private static final int SUBTYPE = 0;
+    private static final int EQUALITY = 1;
+    private static final int INEQUALITY = 2;
+    private static final int PREFERENCE = 3;
+
+    // variable index -> slot id
+    private final List<Integer> variables = new ArrayList<Integer>();
+    // slot id -> variable index
+    private final Map<Integer, Integer> variableIndices = new HashMap<Integer, Integer>();
+    // checks.get(i) are the constraints of which the last variable is i
+    private final List<List<int[]>> checks = new ArrayList<List<int[]>>();
+    private boolean[][] isSubtype;
+    private int numberOfPreferences;
+
+    public LatticeEnumerationBackEnd(Map<String, String> configuration, Collection<Slot> slots,
+            Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment, Lattice lattice) {
+        super(configuration, slots, constraints, qualHierarchy, processingEnvironment, null, lattice);
+    }
+
+    /**
+     * Whether the given constraints can be solved by this back end with at
+     * most MAX_ASSIGNMENTS assignments.
+     *
+     * @param constraints
+     * @param lattice
+     * @return
+     */
+    public static boolean canSolve(Collection<Constraint> constraints, Lattice lattice) {
+        Set<Integer> variables = new HashSet<Integer>();
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                if (slot instanceof ConstantSlot) {
+                    if (isEncoded(constraint)
+                            && !lattice.typeToInt.containsKey(((ConstantSlot) slot).getValue())) {
+                        return false;
+                    }
+                } else {
+                    variables.add(((VariableSlot) slot).getId());
+                }
+            }
+            if (constraint instanceof InequalityConstraint && lattice.numTypes > 2
+                    && !(((InequalityConstraint) constraint).getFirst() instanceof ConstantSlot)
+                    && !(((InequalityConstraint) constraint).getSecond() instanceof ConstantSlot)) {
+                // the MaxSat serializer does not encode this as inequality
+                // in lattices with more than two types
+                return false;
+            }
+        }
+        long assignments = 1;
+        for (int i = 0; i < variables.size(); i++) {
+            assignments *= lattice.numTypes;
+            if (assignments > MAX_ASSIGNMENTS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the MaxSat serializer encodes the constraint to no
+     *         clause.
+     */
+    private static boolean isEncoded(Constraint constraint) {
+        if (constraint instanceof ComparableConstraint || constraint instanceof CombineConstraint
+                || constraint instanceof ExistentialConstraint) {
+            return false;
+        }
+        for (Slot slot : constraint.getSlots()) {
+            if (!(slot instanceof ConstantSlot)) {
+                return true;
+            }
+        }
+        // constraints between constants are not checked
+        return false;
+    }
+
+    @Override
+    public void convertAll() {
+        isSubtype = new boolean[lattice.numTypes][lattice.numTypes];
+        for (Map.Entry<AnnotationMirror, Integer> supertype : lattice.typeToInt.entrySet()) {
+            for (AnnotationMirror subtype : lattice.subType.get(supertype.getKey())) {
+                isSubtype[lattice.typeToInt.get(subtype)][supertype.getValue()] = true;
+            }
+        }
+        for (Constraint constraint : constraints) {
+            collectVarSlots(constraint);
+            for (Slot slot : constraint.getSlots()) {
+                if (!(slot instanceof ConstantSlot)) {
+                    getIndex(((VariableSlot) slot).getId());
+                }
+            }
+        }
+        for (int i = 0; i < variables.size(); i++) {
+            checks.add(new ArrayList<int[]>());
+        }
+        for (Constraint constraint : constraints) {
+            if (!isEncoded(constraint)) {
+                continue;
+            }
+            int[] check;
+            if (constraint instanceof SubtypeConstraint) {
+                SubtypeConstraint subtypeConstraint = (SubtypeConstraint) constraint;
+                check = new int[] { SUBTYPE, encode(subtypeConstraint.getSubtype()),
+                        encode(subtypeConstraint.getSupertype()) };
+            } else if (constraint instanceof EqualityConstraint) {
+                EqualityConstraint equalityConstraint = (EqualityConstraint) constraint;
+                check = new int[] { EQUALITY, encode(equalityConstraint.getFirst()),
+                        encode(equalityConstraint.getSecond()) };
+            } else if (constraint instanceof InequalityConstraint) {
+                InequalityConstraint inequalityConstraint = (InequalityConstraint) constraint;
+                check = new int[] { INEQUALITY, encode(inequalityConstraint.getFirst()),
+                        encode(inequalityConstraint.getSecond()) };
+            } else if (constraint instanceof PreferenceConstraint) {
+                PreferenceConstraint preferenceConstraint = (PreferenceConstraint) constraint;
+                check = new int[] { PREFERENCE, encode(preferenceConstraint.getVariable()),
+                        encode(preferenceConstraint.getGoal()) };
+                numberOfPreferences++;
+            } else {
+                continue;
+            }
+            checks.get(Math.max(check[1], check[2])).add(check);
+        }
+    }
+
+    private int getIndex(int slotId) {
+        Integer index = variableIndices.get(slotId);
+        if (index == null) {
+            index = variables.size();
+            variables.add(slotId);
+            variableIndices.put(slotId, index);
+        }
+        return index;
+    }
+
+    /**
+     * A variable slot is encoded as its index, and a constant slot as -1 minus
+     * the int representation of its type, so that the last variable of a check
+     * is the larger one of its two operands.
+     */
+    private int encode(Slot slot) {
+        if (slot instanceof ConstantSlot) {
+            return -1 - lattice.typeToInt.get(((ConstantSlot) slot).getValue());
+        }
+        return variableIndices.get(((VariableSlot) slot).getId());
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        Map<Integer, AnnotationMirror> result = new HashMap<>();
+        this.convertAll();
+        int[] assignment = new int[variables.size()];
+        int[] best = null;
+        int bestPreferences = -1;
+        // number of satisfied preferences of the checks up to each variable
+        int[] preferences = new int[variables.size() + 1];
+        int depth = 0;
+        if (variables.isEmpty()) {
+            return result;
+        }
+        assignment[0] = -1;
+        while (depth >= 0) {
+            if (++assignment[depth] == lattice.numTypes) {
+                depth--;
+                continue;
+            }
+            int satisfied = check(depth, assignment);
+            if (satisfied < 0) {
+                continue;
+            }
+            preferences[depth + 1] = preferences[depth] + satisfied;
+            if (depth + 1 < assignment.length) {
+                depth++;
+                assignment[depth] = -1;
+            } else if (preferences[depth + 1] > bestPreferences) {
+                best = assignment.clone();
+                bestPreferences = preferences[depth + 1];
+                if (bestPreferences == numberOfPreferences) {
+                    break;
+                }
+            }
+        }
+
+        if (best == null) {
+            System.out.println("Not solvable!");
+            this.outcome = Outcome.UNSOLVABLE;
+        } else {
+            for (int i = 0; i < best.length; i++) {
+                result.put(variables.get(i), lattice.intToType.get(best[i]));
+            }
+        }
+        // saving memory of JVM...
+        this.constraints = null;
+        return result;
+    }
+
+    /**
+     * Check the constraints of which the last variable is at index depth.
+     *
+     * @return the number of satisfied preferences, or -1 if a constraint is
+     *         violated.
+     */
+    private int check(int depth, int[] assignment) {
+        int satisfied = 0;
+        for (int[] check : checks.get(depth)) {
+            int first = check[1] < 0 ? -1 - check[1] : assignment[check[1]];
+            int second = check[2] < 0 ? -1 - check[2] : assignment[check[2]];
+            switch (check[0]) {
+            case SUBTYPE:
+                if (!isSubtype[first][second]) {
+                    return -1;
+                }
+                break;
+            case EQUALITY:
+                if (first != second) {
+                    return -1;
+                }
+                break;
+            case INEQUALITY:
+                if (first == second) {
+                    return -1;
+                }
+                break;
+            default:
+                if (first == second) {
+                    satisfied++;
+                }
+            }
+        }
+        return satisfied;
+    }
+}
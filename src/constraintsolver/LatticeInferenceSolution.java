@@ -0,0 +1,52 @@
+package constraintsolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceSolution;
+
+/**
+ * An InferenceSolution backed by a SolutionStore. The annotation of a variable
+ * is looked up in the lattice when it is requested, so no map of
+ * AnnotationMirrors is built for the whole solution.
+ *
+ * @author jianchu
+ *
+ */
+public class LatticeInferenceSolution implements InferenceSolution {
+
+    private final SolutionStore store;
+    private final Lattice lattice;
+    private Map<Integer, Boolean> idToExistence;
+
+    public LatticeInferenceSolution(SolutionStore store, Lattice lattice) {
+        this.store = store;
+        this.lattice = lattice;
+    }
+
+    @Override
+    public Map<Integer, Boolean> getVarIdToExistence() {
+        if (idToExistence == null) {
+            idToExistence = new HashMap<Integer, Boolean>();
+            for (int varId = 0; varId < store.capacity(); varId++) {
+                if (store.get(varId) != SolutionStore.NO_TYPE) {
+                    idToExistence.put(varId, true);
+                }
+            }
+        }
+        return idToExistence;
+    }
+
+    @Override
+    public boolean doesVariableExist(int varId) {
+        return varId >= 0 && store.get(varId) != SolutionStore.NO_TYPE;
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(int varId) {
+        int type = varId < 0 ? SolutionStore.NO_TYPE : store.get(varId);
+        return type == SolutionStore.NO_TYPE ? null : lattice.intToType.get(type);
+    }
+}
@@ -0,0 +1,102 @@
+package constraintsolver;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * The solution of a component as the int representations of the types of its
+ * slots in a lattice. It is a read-only map for the callers that need
+ * annotations, and the annotation of a slot is only looked up in the lattice
+ * when the entry of the slot is read.
+ *
+ * @author jianchu
+ *
+ */
+public class LatticeSolution extends AbstractMap<Integer, AnnotationMirror> {
+
+    private final Lattice lattice;
+    private int[] slotIds;
+    private int[] types;
+    private int size = 0;
+
+    public LatticeSolution(Lattice lattice, int expectedSize) {
+        this.lattice = lattice;
+        this.slotIds = new int[Math.max(expectedSize, 1)];
+        this.types = new int[slotIds.length];
+    }
+
+    /**
+     * @param slotId
+     * @param type
+     *            the int representation of the type in the lattice
+     */
+    public void add(int slotId, int type) {
+        if (size == slotIds.length) {
+            slotIds = Arrays.copyOf(slotIds, size * 2);
+            types = Arrays.copyOf(types, size * 2);
+        }
+        slotIds[size] = slotId;
+        types[size++] = type;
+    }
+
+    public Lattice getLattice() {
+        return lattice;
+    }
+
+    public int getSlotId(int index) {
+        return slotIds[index];
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, AnnotationMirror>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, AnnotationMirror>>() {
+            @Override
+            public Iterator<Map.Entry<Integer, AnnotationMirror>> iterator() {
+                return new Iterator<Map.Entry<Integer, AnnotationMirror>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, AnnotationMirror> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        return new SimpleImmutableEntry<Integer, AnnotationMirror>(slotIds[index],
+                                lattice.intToType.get(types[index]));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package constraintsolver;
+
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import util.PrintUtils;
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceSolution;
+
+/**
+ * Merges component solutions that are all solved in the same lattice into a
+ * SolutionStore. The solutions decoded by the back ends as LatticeSolutions
+ * are copied as ints, and annotations are only looked up in the lattice when
+ * they are read from the merged solution.
+ *
+ * @author jianchu
+ *
+ */
+public class LatticeSolutionMerger extends SolutionMerger {
+
+    protected final Lattice lattice;
+    protected final SolutionStore store = new SolutionStore();
+
+    public LatticeSolutionMerger(Lattice lattice) {
+        this.lattice = lattice;
+    }
+
+    @Override
+    public void merge(Map<Integer, AnnotationMirror> componentSolution) {
+        if (componentSolution instanceof LatticeSolution
+                && ((LatticeSolution) componentSolution).getLattice() == lattice) {
+            LatticeSolution latticeSolution = (LatticeSolution) componentSolution;
+            for (int i = 0; i < latticeSolution.size(); i++) {
+                store.put(latticeSolution.getSlotId(i), latticeSolution.getType(i));
+            }
+            return;
+        }
+        for (Map.Entry<Integer, AnnotationMirror> entry : componentSolution.entrySet()) {
+            Integer typeIndex = lattice.typeToInt.get(entry.getValue());
+            if (typeIndex == null) {
+                ErrorReporter.errorAbort("Solution of slot " + entry.getKey() + " is not in the lattice: "
+                        + entry.getValue());
+            }
+            store.put(entry.getKey(), typeIndex);
+        }
+    }
+
+    @Override
+    public InferenceSolution getSolution() {
+        Map<Integer, AnnotationMirror> view = store.asMap(lattice);
+        Map<Integer, AnnotationMirror> result = complete(view);
+        PrintUtils.printResult(result);
+        if (result == view) {
+            return new LatticeInferenceSolution(store, lattice);
+        }
+        return new DefaultInferenceSolution(result);
+    }
+
+    /**
+     * Hook for adding the solution of slots that do not appear in any
+     * component.
+     *
+     * @param result
+     * @return
+     */
+    protected Map<Integer, AnnotationMirror> complete(Map<Integer, AnnotationMirror> result) {
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package constraintsolver;
+
+import java.util.List;
+
+/**
+ * Solves all components one after another on the calling thread.
+ *
+ * @author jianchu
+ *
+ */
+public class SequentialScheduler extends ComponentScheduler {
+
+    @Override
+    public void schedule(List<BackEnd<?, ?>> backEnds, SolutionMerger merger) {
+        final long enqueued = System.currentTimeMillis();
+        final SolveBudget budget = createBudget(backEnds, 1);
+
+        for (int i = 0; i < backEnds.size(); i++) {
+            ComponentTask task = new ComponentTask(i, backEnds.get(i), estimateCost(backEnds.get(i)),
+                    enqueued, budget);
+            backEnds.set(i, null);
+            merger.merge(task.call());
+            if (shouldFailFast(task)) {
+                for (int j = i + 1; j < backEnds.size(); j++) {
+                    backEnds.set(j, null);
+                    recordOutcome(j, BackEnd.Outcome.CANCELLED);
+                }
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package constraintsolver;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import constraintgraph.DisjointSet;
+import constraintgraph.StronglyConnectedComponents;
+
+/**
+ * Groups of variable slots that have to be equal, either because of equality
+ * constraints between them, or because they are on a cycle of subtype
+ * constraints. Each group is solved as one slot, its representative, so the
+ * equality and subtype constraints inside a group are encoded to no clause at
+ * all, and the solution of the representative is copied to the other slots of
+ * the group afterwards.
+ *
+ * @author jianchu
+ *
+ */
+public class SlotAliases {
+
+    // slot id -> representative slot id
+    private final int[] representatives;
+    // slot id -> next slot id in the same group, the groups are circular
+    private final int[] nextMembers;
+    private int equalitySlots = 0;
+    private int cycleSlots = 0;
+    private int collapsedConstraints = 0;
+
+    /**
+     * @param constraints
+     * @param collapseEqualities
+     *            merge slots of equality constraints between variable slots
+     * @param collapseSubtypeCycles
+     *            merge slots of each strongly connected component of the
+     *            subtype constraints between variable slots
+     */
+    public SlotAliases(Collection<Constraint> constraints, boolean collapseEqualities,
+            boolean collapseSubtypeCycles) {
+        int maxSlotId = 0;
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                maxSlotId = Math.max(maxSlotId, ((VariableSlot) slot).getId());
+            }
+        }
+        DisjointSet disjointSet = new DisjointSet(maxSlotId + 1);
+        if (collapseEqualities) {
+            for (Constraint constraint : constraints) {
+                if (constraint instanceof EqualityConstraint && isBetweenVariables(constraint)) {
+                    if (disjointSet.union(getFirstId(constraint), getSecondId(constraint))) {
+                        equalitySlots++;
+                    }
+                }
+            }
+        }
+        if (collapseSubtypeCycles) {
+            collapseCycles(constraints, collapseEqualities, disjointSet, maxSlotId + 1);
+        }
+
+        this.representatives = new int[maxSlotId + 1];
+        this.nextMembers = new int[maxSlotId + 1];
+        for (int id = 0; id <= maxSlotId; id++) {
+            representatives[id] = disjointSet.find(id);
+            nextMembers[id] = id;
+        }
+        for (int id = 0; id <= maxSlotId; id++) {
+            int representative = representatives[id];
+            if (representative != id) {
+                // insert id right after its representative
+                nextMembers[id] = nextMembers[representative];
+                nextMembers[representative] = id;
+            }
+        }
+        for (Constraint constraint : constraints) {
+            if (isCollapsed(constraint)) {
+                collapsedConstraints++;
+            }
+        }
+    }
+
+    /**
+     * Merge the slots of each strongly connected component of the directed
+     * graph that has an edge from subtype to supertype for each subtype
+     * constraint between variable slots. Equality constraints are edges in
+     * both directions if they are collapsed too.
+     */
+    private void collapseCycles(Collection<Constraint> constraints, boolean withEqualities,
+            DisjointSet disjointSet, int size) {
+        int[] edgeFrom = new int[constraints.size() * 2];
+        int[] edgeTo = new int[constraints.size() * 2];
+        int numberOfEdges = 0;
+        for (Constraint constraint : constraints) {
+            if (!(constraint instanceof SubtypeConstraint || constraint instanceof EqualityConstraint)
+                    || !isBetweenVariables(constraint)) {
+                continue;
+            }
+            if (constraint instanceof SubtypeConstraint) {
+                edgeFrom[numberOfEdges] = getFirstId(constraint);
+                edgeTo[numberOfEdges++] = getSecondId(constraint);
+            } else if (constraint instanceof EqualityConstraint && withEqualities) {
+                edgeFrom[numberOfEdges] = getFirstId(constraint);
+                edgeTo[numberOfEdges++] = getSecondId(constraint);
+                edgeFrom[numberOfEdges] = getSecondId(constraint);
+                edgeTo[numberOfEdges++] = getFirstId(constraint);
+            }
+        }
+        StronglyConnectedComponents components = new StronglyConnectedComponents(size, edgeFrom,
+                edgeTo, numberOfEdges);
+        // component -> first slot id of the component
+        int[] firstSlots = new int[components.getNumberOfComponents()];
+        Arrays.fill(firstSlots, -1);
+        for (int id = 0; id < size; id++) {
+            int component = components.getComponent(id);
+            if (firstSlots[component] == -1) {
+                firstSlots[component] = id;
+            } else if (disjointSet.union(firstSlots[component], id)) {
+                cycleSlots++;
+            }
+        }
+    }
+
+    /**
+     * An equality or subtype constraint between two variable slots of the
+     * same group is satisfied by solving the group as one slot, so it is
+     * encoded to no clause.
+     *
+     * @param constraint
+     * @return
+     */
+    public boolean isCollapsed(Constraint constraint) {
+        return (constraint instanceof EqualityConstraint || constraint instanceof SubtypeConstraint)
+                && isBetweenVariables(constraint)
+                && getRepresentative(getFirstId(constraint)) == getRepresentative(getSecondId(constraint));
+    }
+
+    private static boolean isBetweenVariables(Constraint constraint) {
+        return !(getFirst(constraint) instanceof ConstantSlot)
+                && !(getSecond(constraint) instanceof ConstantSlot);
+    }
+
+    private static int getFirstId(Constraint constraint) {
+        return ((VariableSlot) getFirst(constraint)).getId();
+    }
+
+    private static int getSecondId(Constraint constraint) {
+        return ((VariableSlot) getSecond(constraint)).getId();
+    }
+
+    // subtype of a subtype constraint, first slot of an equality constraint
+    private static Slot getFirst(Constraint constraint) {
+        return constraint instanceof SubtypeConstraint ? ((SubtypeConstraint) constraint).getSubtype()
+                : ((EqualityConstraint) constraint).getFirst();
+    }
+
+    // supertype of a subtype constraint, second slot of an equality constraint
+    private static Slot getSecond(Constraint constraint) {
+        return constraint instanceof SubtypeConstraint ? ((SubtypeConstraint) constraint).getSupertype()
+                : ((EqualityConstraint) constraint).getSecond();
+    }
+
+    public int getRepresentative(int slotId) {
+        return slotId < representatives.length ? representatives[slotId] : slotId;
+    }
+
+    /**
+     * The slots of a group form a cycle, so the other slots of the group of a
+     * representative are visited by following getNextMember until it is the
+     * representative again.
+     *
+     * @param slotId
+     * @return the next slot id in the group of the slot.
+     */
+    public int getNextMember(int slotId) {
+        return slotId < nextMembers.length ? nextMembers[slotId] : slotId;
+    }
+
+    /**
+     * @return the number of slots that are solved as another slot because of
+     *         equality constraints.
+     */
+    public int getEqualitySlots() {
+        return equalitySlots;
+    }
+
+    /**
+     * @return the number of slots that are solved as another slot because of
+     *         cycles of subtype constraints, and not because of equality
+     *         constraints.
+     */
+    public int getCycleSlots() {
+        return cycleSlots;
+    }
+
+    /**
+     * @return the number of equality and subtype constraints that are encoded
+     *         to no clause.
+     */
+    public int getCollapsedConstraints() {
+        return collapsedConstraints;
+    }
+}
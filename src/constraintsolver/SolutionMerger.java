@@ -0,0 +1,22 @@
+package constraintsolver;
+
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceSolution;
+
+/**
+ * Merges the solutions of independent components into one inference solution.
+ * The solution of a component is merged as soon as the component is solved,
+ * so that it does not need to be kept until all the other components finish.
+ *
+ * @author jianchu
+ *
+ */
+public abstract class SolutionMerger {
+
+    public abstract void merge(Map<Integer, AnnotationMirror> componentSolution);
+
+    public abstract InferenceSolution getSolution();
+}
@@ -0,0 +1,146 @@
+package constraintsolver;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * A primitive map from slot id to the int representation of its type in a
+ * lattice.
+ *
+ * @author jianchu
+ *
+ */
+public class SolutionStore {
+
+    public static final int NO_TYPE = -1;
+
+    private int[] types = new int[0];
+    private int size = 0;
+
+    public void put(int slotId, int typeIndex) {
+        if (slotId >= types.length) {
+            int oldLength = types.length;
+            types = Arrays.copyOf(types, Math.max(slotId + 1, oldLength * 2));
+            Arrays.fill(types, oldLength, types.length, NO_TYPE);
+        }
+        if (types[slotId] == NO_TYPE) {
+            size++;
+        }
+        types[slotId] = typeIndex;
+    }
+
+    public int get(int slotId) {
+        return slotId < types.length ? types[slotId] : NO_TYPE;
+    }
+
+    /**
+     * @return an upper bound (exclusive) of the slot ids in this store.
+     */
+    public int capacity() {
+        return types.length;
+    }
+
+    /**
+     * @return the number of slots that have a type.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A map view of this store. The annotation of a slot is looked up in the
+     * lattice when the slot is read, and annotations that are put into the
+     * view are stored as their int representations.
+     *
+     * @param lattice
+     * @return
+     */
+    public Map<Integer, AnnotationMirror> asMap(final Lattice lattice) {
+        return new AbstractMap<Integer, AnnotationMirror>() {
+            @Override
+            public AnnotationMirror get(Object key) {
+                int typeIndex = key instanceof Integer ? typeOf((Integer) key) : NO_TYPE;
+                return typeIndex == NO_TYPE ? null : lattice.intToType.get(typeIndex);
+            }
+
+            private int typeOf(int slotId) {
+                return slotId < 0 ? NO_TYPE : SolutionStore.this.get(slotId);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Integer && typeOf((Integer) key) != NO_TYPE;
+            }
+
+            @Override
+            public AnnotationMirror put(Integer slotId, AnnotationMirror value) {
+                Integer typeIndex = lattice.typeToInt.get(value);
+                if (typeIndex == null) {
+                    throw new IllegalArgumentException("Solution of slot " + slotId
+                            + " is not in the lattice: " + value);
+                }
+                AnnotationMirror old = get((Object) slotId);
+                SolutionStore.this.put(slotId, typeIndex);
+                return old;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Map.Entry<Integer, AnnotationMirror>> entrySet() {
+                return new AbstractSet<Map.Entry<Integer, AnnotationMirror>>() {
+                    @Override
+                    public Iterator<Map.Entry<Integer, AnnotationMirror>> iterator() {
+                        return new Iterator<Map.Entry<Integer, AnnotationMirror>>() {
+                            private int next = nextSlot(0);
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < types.length;
+                            }
+
+                            @Override
+                            public Map.Entry<Integer, AnnotationMirror> next() {
+                                if (next >= types.length) {
+                                    throw new NoSuchElementException();
+                                }
+                                int slotId = next;
+                                next = nextSlot(slotId + 1);
+                                return new SimpleImmutableEntry<Integer, AnnotationMirror>(slotId,
+                                        lattice.intToType.get(types[slotId]));
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    // the first slot id from the given one that has a type
+    private int nextSlot(int slotId) {
+        while (slotId < types.length && types[slotId] == NO_TYPE) {
+            slotId++;
+        }
+        return slotId;
+    }
+}
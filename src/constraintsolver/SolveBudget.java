@@ -0,0 +1,57 @@
+package constraintsolver;
+
+/**
+ * The time that is left until the deadline of a ConstraintSolver, split
+ * across the components that have not started yet in proportion to their
+ * estimated cost. A component that finishes early leaves its time to the
+ * components that start after it.
+ *
+ * @author jianchu
+ *
+ */
+public class SolveBudget {
+
+    // a component gets at least this much of the time that is left
+    private static final long MIN_TIMEOUT_MS = 1000;
+
+    private final long deadline;
+    private final int parallelism;
+    private long remainingCost;
+
+    /**
+     * @param deadline
+     *            in milliseconds since the epoch
+     * @param totalCost
+     *            the estimated cost of all components
+     * @param parallelism
+     *            the number of components that are solved at the same time
+     */
+    public SolveBudget(long deadline, long totalCost, int parallelism) {
+        this.deadline = deadline;
+        this.remainingCost = totalCost;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Take the share of a component that is about to start.
+     *
+     * @param cost
+     *            the estimated cost of the component
+     * @return the timeout of the component in milliseconds, or 0 if the
+     *         deadline has passed.
+     */
+    public synchronized long allocate(long cost) {
+        long remainingTime = deadline - System.currentTimeMillis();
+        long share = remainingCost > 0 ? (long) ((double) remainingTime * cost * parallelism / remainingCost)
+                : remainingTime;
+        remainingCost -= cost;
+        if (remainingTime <= 0) {
+            return 0;
+        }
+        return Math.min(remainingTime, Math.max(share, MIN_TIMEOUT_MS));
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+}
@@ -0,0 +1,71 @@
+package constraintsolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * Solves components on a work-stealing pool. Components are submitted from
+ * the largest to the smallest one, so that a huge component does not start
+ * last and keep a single core busy after all the others are done. Solutions
+ * are merged on the calling thread in the order the components finish.
+ *
+ * @author jianchu
+ *
+ */
+public class WorkStealingScheduler extends ComponentScheduler {
+
+    private final int parallelism;
+
+    public WorkStealingScheduler(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void schedule(List<BackEnd<?, ?>> backEnds, SolutionMerger merger)
+            throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CompletionService<Map<Integer, AnnotationMirror>> service = new ExecutorCompletionService<Map<Integer, AnnotationMirror>>(
+                pool);
+
+        try {
+            final long enqueued = System.currentTimeMillis();
+            final SolveBudget budget = createBudget(backEnds, parallelism);
+            List<ComponentTask> tasks = new ArrayList<ComponentTask>(backEnds.size());
+            Map<Future<Map<Integer, AnnotationMirror>>, ComponentTask> taskOfFuture = new HashMap<Future<Map<Integer, AnnotationMirror>>, ComponentTask>();
+            for (Integer component : largestFirst(backEnds)) {
+                BackEnd<?, ?> backEnd = backEnds.get(component);
+                ComponentTask task = new ComponentTask(component, backEnd, estimateCost(backEnd),
+                        enqueued, budget);
+                tasks.add(task);
+                taskOfFuture.put(service.submit(task), task);
+                backEnds.set(component, null);
+            }
+
+            boolean cancelled = false;
+            for (int i = 0; i < backEnds.size(); i++) {
+                Future<Map<Integer, AnnotationMirror>> future = service.take();
+                merger.merge(future.get());
+                if (!cancelled && shouldFailFast(taskOfFuture.get(future))) {
+                    // the tasks that have not started return right away, and
+                    // the running ones stop their solvers, so the remaining
+                    // futures are done soon
+                    for (ComponentTask task : tasks) {
+                        task.cancel();
+                    }
+                    cancelled = true;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -5,8 +5,6 @@ import org.checkerframework.javacutil.AnnotationUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,8 +12,6 @@ import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
-import util.PrintUtils;
-import checkers.inference.DefaultInferenceSolution;
 import checkers.inference.InferenceMain;
 import checkers.inference.InferenceSolution;
 import checkers.inference.model.Constraint;
@@ -27,8 +23,8 @@ import constraintgraph.GraphBuilder.SubtypeDirection;
 import constraintgraph.Vertex;
 import constraintsolver.BackEnd;
 import constraintsolver.ConstraintSolver;
+import constraintsolver.SolutionMerger;
 import constraintsolver.TwoQualifiersLattice;
-import dataflow.DataflowAnnotatedTypeFactory;
 import dataflow.qual.DataFlow;
 import dataflow.qual.DataFlowInferenceBottom;
 import dataflow.util.DataflowUtils;
@@ -72,62 +68,21 @@ public class DataflowConstraintSolver extends ConstraintSolver {
                 }
             }
         }
-        return mergeSolution(solve(backEnds));
+        return solve(backEnds);
     }
 
     @Override
     protected ConstraintGraph generateGraph(Collection<Slot> slots, Collection<Constraint> constraints) {
-        GraphBuilder graphBuilder = new GraphBuilder(slots, constraints, SubtypeDirection.FROMSUBTYPE);
+        GraphBuilder graphBuilder = createGraphBuilder(slots, constraints, SubtypeDirection.FROMSUBTYPE);
+        // one back end per datatype instead of one per constant slot
+        graphBuilder.setGroupConstantsByValue(true);
         ConstraintGraph constraintGraph = graphBuilder.buildGraph();
         return constraintGraph;
     }
 
     @Override
-    protected InferenceSolution mergeSolution(List<Map<Integer, AnnotationMirror>> inferenceSolutionMaps) {
-        Map<Integer, AnnotationMirror> result = new HashMap<>();
-        Map<Integer, Set<AnnotationMirror>> dataflowResults = new HashMap<>();
-
-        for (Map<Integer, AnnotationMirror> inferenceSolutionMap : inferenceSolutionMaps) {
-            for (Map.Entry<Integer, AnnotationMirror> entry : inferenceSolutionMap.entrySet()) {
-                Integer id = entry.getKey();
-                AnnotationMirror dataflowAnno = entry.getValue();
-                if (AnnotationUtils.areSameIgnoringValues(dataflowAnno, DATAFLOW)) {
-                    Set<AnnotationMirror> datas = dataflowResults.get(id);
-                    if (datas == null) {
-                        datas = AnnotationUtils.createAnnotationSet();
-                        dataflowResults.put(id, datas);
-                    }
-                    datas.add(dataflowAnno);
-                }
-            }
-
-        }
-        for (Map.Entry<Integer, Set<AnnotationMirror>> entry : dataflowResults.entrySet()) {
-            Set<String> dataTypes = new HashSet<String>();
-            Set<String> dataRoots = new HashSet<String>();
-            for (AnnotationMirror anno : entry.getValue()) {
-                String[] dataTypesArr = DataflowUtils.getTypeNames(anno);
-                String[] dataRootsArr = DataflowUtils.getTypeNameRoots(anno);
-                if (dataTypesArr.length == 1) {
-                    dataTypes.add(dataTypesArr[0]);
-                }
-                if (dataRootsArr.length == 1) {
-                    dataRoots.add(dataRootsArr[0]);
-                }
-            }
-            AnnotationMirror dataflowAnno = DataflowUtils.createDataflowAnnotationWithRoots(dataTypes,
-                    dataRoots, processingEnvironment);
-            result.put(entry.getKey(), dataflowAnno);
-        }
-        for (Map.Entry<Integer, AnnotationMirror> entry : result.entrySet()) {
-            AnnotationMirror refinedDataflow = ((DataflowAnnotatedTypeFactory) InferenceMain
-                    .getInstance().getRealTypeFactory())
-                    .refineDataflow(entry.getValue());
-            entry.setValue(refinedDataflow);
-        }
-
-        PrintUtils.printResult(result);
-        return new DefaultInferenceSolution(result);
+    protected SolutionMerger createSolutionMerger() {
+        return new DataflowSolutionMerger(DATAFLOW, processingEnvironment);
     }
 
     @Override
@@ -0,0 +1,87 @@
+package dataflow.solvers.backend;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import util.PrintUtils;
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import constraintsolver.SolutionMerger;
+import dataflow.DataflowAnnotatedTypeFactory;
+import dataflow.util.DataflowUtils;
+
+/**
+ * Each component of the dataflow type system is solved in the two qualifiers
+ * lattice of one datatype, so the solution of a slot is the union of the
+ * datatypes of all the components that infer @DataFlow for it.
+ *
+ * @author jianchu
+ *
+ */
+public class DataflowSolutionMerger extends SolutionMerger {
+
+    private final AnnotationMirror DATAFLOW;
+    private final ProcessingEnvironment processingEnvironment;
+    private final Map<Integer, Set<AnnotationMirror>> dataflowResults = new HashMap<>();
+
+    public DataflowSolutionMerger(AnnotationMirror DATAFLOW, ProcessingEnvironment processingEnvironment) {
+        this.DATAFLOW = DATAFLOW;
+        this.processingEnvironment = processingEnvironment;
+    }
+
+    @Override
+    public void merge(Map<Integer, AnnotationMirror> componentSolution) {
+        for (Map.Entry<Integer, AnnotationMirror> entry : componentSolution.entrySet()) {
+            Integer id = entry.getKey();
+            AnnotationMirror dataflowAnno = entry.getValue();
+            if (AnnotationUtils.areSameIgnoringValues(dataflowAnno, DATAFLOW)) {
+                Set<AnnotationMirror> datas = dataflowResults.get(id);
+                if (datas == null) {
+                    datas = AnnotationUtils.createAnnotationSet();
+                    dataflowResults.put(id, datas);
+                }
+                datas.add(dataflowAnno);
+            }
+        }
+    }
+
+    @Override
+    public InferenceSolution getSolution() {
+        Map<Integer, AnnotationMirror> result = new HashMap<>();
+
+        for (Map.Entry<Integer, Set<AnnotationMirror>> entry : dataflowResults.entrySet()) {
+            Set<String> dataTypes = new HashSet<String>();
+            Set<String> dataRoots = new HashSet<String>();
+            for (AnnotationMirror anno : entry.getValue()) {
+                String[] dataTypesArr = DataflowUtils.getTypeNames(anno);
+                String[] dataRootsArr = DataflowUtils.getTypeNameRoots(anno);
+                if (dataTypesArr.length == 1) {
+                    dataTypes.add(dataTypesArr[0]);
+                }
+                if (dataRootsArr.length == 1) {
+                    dataRoots.add(dataRootsArr[0]);
+                }
+            }
+            AnnotationMirror dataflowAnno = DataflowUtils.createDataflowAnnotationWithRoots(dataTypes,
+                    dataRoots, processingEnvironment);
+            result.put(entry.getKey(), dataflowAnno);
+        }
+        for (Map.Entry<Integer, AnnotationMirror> entry : result.entrySet()) {
+            AnnotationMirror refinedDataflow = ((DataflowAnnotatedTypeFactory) InferenceMain
+                    .getInstance().getRealTypeFactory())
+                    .refineDataflow(entry.getValue());
+            entry.setValue(refinedDataflow);
+        }
+
+        PrintUtils.printResult(result);
+        return new DefaultInferenceSolution(result);
+    }
+}
@@ -43,6 +43,8 @@ public class DataflowSolver implements InferenceSolver {
         Elements elements = processingEnvironment.getElementUtils();
         DATAFLOW = AnnotationUtils.fromClass(elements, DataFlow.class);
         GraphBuilder graphBuilder = new GraphBuilder(slots, constraints);
+        // one datatype solver per datatype instead of one per constant slot
+        graphBuilder.setGroupConstantsByValue(true);
         ConstraintGraph constraintGraph = graphBuilder.buildGraph();
 
         Collection<String> datatypesUsed = getDatatypesUsed(slots);
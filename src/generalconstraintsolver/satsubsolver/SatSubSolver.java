@@ -7,7 +7,6 @@ import generalconstraintsolver.LatticeGenerator;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -17,6 +16,8 @@ import javax.lang.model.element.AnnotationMirror;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
 
+import util.CardinalityUtils;
+
 import checkers.inference.DefaultInferenceSolution;
 import checkers.inference.InferenceSolution;
 import checkers.inference.SlotManager;
@@ -91,19 +92,7 @@ public class SatSubSolver {
                 j++;
             }
             clauses.add(asVec(wellFormFirst));
-            Iterator<Integer> intRep1 = lattice.IntModifier.keySet().iterator();
-            Set<Integer> intRep2 = lattice.IntModifier.keySet();
-            while (intRep1.hasNext()) {
-                Integer int1= intRep1.next();
-                for (Integer int2: intRep2) {
-                    int[] wellFormFollow = new int[2];
-                    if (int2.intValue() != int1.intValue()) {
-                        wellFormFollow[0] = -(lattice.numModifiers * (id - 1) + int1.intValue());
-                        wellFormFollow[1] = -(lattice.numModifiers * (id - 1) + int2.intValue());
-                        clauses.add(asVec(wellFormFollow));
-                    }
-                }
-            }
+            CardinalityUtils.atMostOnePairwise(wellFormFirst, clauses);
         }
     }
 
@@ -0,0 +1,180 @@
+package maxsatbackend;
+
+import java.util.Arrays;
+
+import org.sat4j.core.VecInt;
+
+/**
+ * Hard and soft clauses stored in two flat int arrays: the literals of all
+ * clauses one after the other, and the offset of the first literal of each
+ * clause. A clause costs its literals and one offset, instead of a list node,
+ * a VecInt and its own array.
+ *
+ * @author jianchu
+ *
+ */
+public class ClauseArena {
+
+    private int[] literals = new int[1024];
+    private int numberOfLiterals = 0;
+    // clause i is literals[starts[i]] to literals[starts[i + 1] - 1]
+    private int[] starts = new int[257];
+    private boolean[] soft = new boolean[256];
+    private int size = 0;
+    private int numberOfSoftClauses = 0;
+
+    /**
+     * Append a literal to the clause that is closed by the next endClause.
+     *
+     * @param literal
+     */
+    public void addLiteral(int literal) {
+        if (numberOfLiterals == literals.length) {
+            literals = Arrays.copyOf(literals, literals.length * 2);
+        }
+        literals[numberOfLiterals++] = literal;
+    }
+
+    /**
+     * Close the clause of the literals added since the last clause.
+     *
+     * @param isSoft
+     */
+    public void endClause(boolean isSoft) {
+        if (size + 1 == soft.length) {
+            soft = Arrays.copyOf(soft, soft.length * 2);
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        soft[size] = isSoft;
+        if (isSoft) {
+            numberOfSoftClauses++;
+        }
+        starts[++size] = numberOfLiterals;
+    }
+
+    public void addClause(VecInt clause, boolean isSoft) {
+        for (int i = 0; i < clause.size(); i++) {
+            addLiteral(clause.get(i));
+        }
+        endClause(isSoft);
+    }
+
+    public void addClause(int[] clause, boolean isSoft) {
+        for (int i = 0; i < clause.length; i++) {
+            addLiteral(clause[i]);
+        }
+        endClause(isSoft);
+    }
+
+    /**
+     * @return the number of hard and soft clauses.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getNumberOfHardClauses() {
+        return size - numberOfSoftClauses;
+    }
+
+    public int getNumberOfSoftClauses() {
+        return numberOfSoftClauses;
+    }
+
+    public boolean isSoft(int clause) {
+        return soft[clause];
+    }
+
+    /**
+     * @return the position of the first literal of the clause.
+     */
+    public int getStart(int clause) {
+        return starts[clause];
+    }
+
+    /**
+     * @return the position after the last literal of the clause.
+     */
+    public int getEnd(int clause) {
+        return starts[clause + 1];
+    }
+
+    public int getLiteral(int position) {
+        return literals[position];
+    }
+
+    public void setLiteral(int position, int literal) {
+        literals[position] = literal;
+    }
+
+    public int getNumberOfLiterals() {
+        return numberOfLiterals;
+    }
+
+    /**
+     * Append all clauses of other to this arena.
+     *
+     * @param other
+     */
+    public void addAll(ClauseArena other) {
+        if (numberOfLiterals + other.numberOfLiterals > literals.length) {
+            literals = Arrays.copyOf(literals,
+                    Math.max(literals.length * 2, numberOfLiterals + other.numberOfLiterals));
+        }
+        if (size + other.size + 1 > soft.length) {
+            int capacity = Math.max(soft.length * 2, size + other.size + 1);
+            soft = Arrays.copyOf(soft, capacity);
+            starts = Arrays.copyOf(starts, capacity + 1);
+        }
+        System.arraycopy(other.literals, 0, literals, numberOfLiterals, other.numberOfLiterals);
+        System.arraycopy(other.soft, 0, soft, size, other.size);
+        for (int clause = 1; clause <= other.size; clause++) {
+            starts[size + clause] = numberOfLiterals + other.starts[clause];
+        }
+        numberOfLiterals += other.numberOfLiterals;
+        size += other.size;
+        numberOfSoftClauses += other.numberOfSoftClauses;
+    }
+
+    /**
+     * Copy the literals of the clause into the given vector, which is cleared
+     * first. sat4j copies the literals of the clauses it is given, so one
+     * vector can be reused for all clauses.
+     *
+     * @param clause
+     * @param vec
+     * @return vec
+     */
+    public VecInt toVec(int clause, VecInt vec) {
+        vec.clear();
+        for (int position = starts[clause]; position < starts[clause + 1]; position++) {
+            vec.push(literals[position]);
+        }
+        return vec;
+    }
+
+    /**
+     * Remove all clauses and release the memory of the arrays.
+     */
+    public void clear() {
+        literals = new int[16];
+        starts = new int[17];
+        soft = new boolean[16];
+        numberOfLiterals = 0;
+        size = 0;
+        numberOfSoftClauses = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int clause = 0; clause < size; clause++) {
+            sb.append(soft[clause] ? "soft" : "hard");
+            for (int position = starts[clause]; position < starts[clause + 1]; position++) {
+                sb.append(' ').append(literals[position]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package maxsatbackend;
+
+import java.util.Arrays;
+
+import util.StatisticPrinter;
+import util.StatisticPrinter.StatisticKey;
+
+/**
+ * Removes clauses that do not change the solutions before they are given to
+ * the SAT solver: duplicated hard clauses, tautologies, and clauses that
+ * contain the literal of a hard unit clause. Duplicated soft clauses are kept,
+ * as each of them counts in the weight of the solution.
+ *
+ * @author jianchu
+ *
+ */
+public class ClausePreprocessor {
+
+    // the hard unit clauses, indexed by variable
+    private final boolean[] positiveUnits;
+    private final boolean[] negativeUnits;
+    // the literals of the current clause, sorted by variable
+    private int[] buffer = new int[16];
+    // open addressing table of the hard clauses in the result, clause + 1
+    private int[] table;
+    private int duplicateClauses = 0;
+    private int subsumedClauses = 0;
+    private int tautologyClauses = 0;
+
+    /**
+     * @param numberOfVars
+     *            the largest variable of the clauses
+     */
+    public ClausePreprocessor(int numberOfVars) {
+        this.positiveUnits = new boolean[numberOfVars + 1];
+        this.negativeUnits = new boolean[numberOfVars + 1];
+    }
+
+    /**
+     * @param clauses
+     * @return the remaining clauses, each sorted by variable and without
+     *         repeated literals.
+     */
+    public ClauseArena simplify(ClauseArena clauses) {
+        collectUnits(clauses);
+        ClauseArena result = new ClauseArena();
+        int capacity = Integer.highestOneBit(Math.max(clauses.getNumberOfHardClauses(), 1) * 2) * 2;
+        this.table = new int[capacity];
+
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            int length = sort(clauses, clause);
+            if (length < 0) {
+                tautologyClauses++;
+                continue;
+            }
+            if (isSubsumedByUnit(length) && (length > 1 || clauses.isSoft(clause))) {
+                subsumedClauses++;
+                continue;
+            }
+            if (clauses.isSoft(clause)) {
+                add(result, length, true);
+            } else if (!insert(result, length)) {
+                duplicateClauses++;
+            }
+        }
+        this.table = null;
+
+        StatisticPrinter.record(StatisticKey.CLAUSES_BEFORE_SIMPLIFICATION_SIZE, (long) clauses.size());
+        StatisticPrinter.record(StatisticKey.CLAUSES_AFTER_SIMPLIFICATION_SIZE, (long) result.size());
+        StatisticPrinter.record(StatisticKey.DUPLICATE_CLAUSES_SIZE, (long) duplicateClauses);
+        StatisticPrinter.record(StatisticKey.SUBSUMED_CLAUSES_SIZE, (long) subsumedClauses);
+        StatisticPrinter.record(StatisticKey.TAUTOLOGY_CLAUSES_SIZE, (long) tautologyClauses);
+        return result;
+    }
+
+    private void collectUnits(ClauseArena clauses) {
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            if (!clauses.isSoft(clause) && clauses.getEnd(clause) - clauses.getStart(clause) == 1) {
+                int literal = clauses.getLiteral(clauses.getStart(clause));
+                if (literal > 0) {
+                    positiveUnits[literal] = true;
+                } else {
+                    negativeUnits[-literal] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the literals of the clause to buffer, sorted by variable and with
+     * repeated literals removed.
+     *
+     * @return the number of literals in buffer, or -1 if the clause has both
+     *         literals of a variable.
+     */
+    private int sort(ClauseArena clauses, int clause) {
+        int length = clauses.getEnd(clause) - clauses.getStart(clause);
+        if (buffer.length < length) {
+            buffer = new int[Math.max(length, buffer.length * 2)];
+        }
+        // sort by variable, the negative literal of a variable first
+        for (int i = 0; i < length; i++) {
+            int literal = clauses.getLiteral(clauses.getStart(clause) + i);
+            buffer[i] = literal > 0 ? literal << 1 : (-literal << 1) - 1;
+        }
+        Arrays.sort(buffer, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            int key = buffer[i];
+            if (distinct > 0 && buffer[distinct - 1] == key) {
+                continue;
+            }
+            if (distinct > 0 && (buffer[distinct - 1] + 1) >> 1 == (key + 1) >> 1) {
+                return -1;
+            }
+            buffer[distinct++] = key;
+        }
+        for (int i = 0; i < distinct; i++) {
+            int key = buffer[i];
+            buffer[i] = (key & 1) == 0 ? key >> 1 : -((key + 1) >> 1);
+        }
+        return distinct;
+    }
+
+    private boolean isSubsumedByUnit(int length) {
+        for (int i = 0; i < length; i++) {
+            int literal = buffer[i];
+            if (literal > 0 ? positiveUnits[literal] : negativeUnits[-literal]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the hard clause in buffer to result, unless result has it already.
+     *
+     * @return false if the clause is a duplicate.
+     */
+    private boolean insert(ClauseArena result, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int mask = table.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (table[slot] != 0) {
+            if (isSame(result, table[slot] - 1, length)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = add(result, length, false) + 1;
+        return true;
+    }
+
+    private boolean isSame(ClauseArena result, int clause, int length) {
+        int start = result.getStart(clause);
+        if (result.getEnd(clause) - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (result.getLiteral(start + i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the added clause in result.
+     */
+    private int add(ClauseArena result, int length, boolean isSoft) {
+        for (int i = 0; i < length; i++) {
+            result.addLiteral(buffer[i]);
+        }
+        result.endClause(isSoft);
+        return result.size() - 1;
+    }
+}
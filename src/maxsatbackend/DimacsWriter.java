@@ -0,0 +1,182 @@
+package maxsatbackend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes clauses in DIMACS CNF or WCNF format as ASCII bytes through one
+ * buffer, without building the text as Strings first. The same bytes can be
+ * written to more than one stream, e.g. to the stdin of a solver process and
+ * to a file.
+ *
+ * @author jianchu
+ *
+ */
+public class DimacsWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream[] outs;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    // digits of the number that is written, from the last one
+    private final byte[] digits = new byte[20];
+
+    /**
+     * @param outs
+     *            the streams that are written to, and closed by close
+     */
+    public DimacsWriter(OutputStream... outs) {
+        this.outs = outs;
+    }
+
+    public void writeComment(String comment) throws IOException {
+        write('c');
+        write(' ');
+        for (int i = 0; i < comment.length(); i++) {
+            write((byte) comment.charAt(i));
+        }
+        write('\n');
+    }
+
+    /**
+     * Write the problem line of a CNF formula.
+     *
+     * @param numberOfVars
+     * @param numberOfClauses
+     */
+    public void writeHeader(int numberOfVars, int numberOfClauses) throws IOException {
+        write('p');
+        write(' ');
+        write('c');
+        write('n');
+        write('f');
+        write(' ');
+        writeInt(numberOfVars);
+        write(' ');
+        writeInt(numberOfClauses);
+        write('\n');
+    }
+
+    /**
+     * Write the problem line of a weighted partial MaxSat formula.
+     *
+     * @param numberOfVars
+     * @param numberOfClauses
+     * @param top
+     *            the weight of the hard clauses, larger than the sum of the
+     *            weights of the soft clauses
+     */
+    public void writeWcnfHeader(int numberOfVars, int numberOfClauses, long top) throws IOException {
+        write('p');
+        write(' ');
+        write('w');
+        write('c');
+        write('n');
+        write('f');
+        write(' ');
+        writeInt(numberOfVars);
+        write(' ');
+        writeInt(numberOfClauses);
+        write(' ');
+        writeLong(top);
+        write('\n');
+    }
+
+    /**
+     * Write a clause of the arena with its weight in front, as in WCNF.
+     *
+     * @param clauses
+     * @param clause
+     * @param weight
+     */
+    public void writeClause(ClauseArena clauses, int clause, long weight) throws IOException {
+        writeLong(weight);
+        write(' ');
+        writeClause(clauses, clause);
+    }
+
+    /**
+     * Write a clause of the arena, terminated by 0.
+     *
+     * @param clauses
+     * @param clause
+     */
+    public void writeClause(ClauseArena clauses, int clause) throws IOException {
+        for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+            writeInt(clauses.getLiteral(i));
+            write(' ');
+        }
+        write('0');
+        write('\n');
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeLong(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (position + 21 > buffer.length) {
+            flushBuffer();
+        }
+        long rest = value;
+        if (rest < 0) {
+            buffer[position++] = '-';
+        }
+        int length = 0;
+        do {
+            // the remainder of a negative number is negative
+            digits[length++] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        while (length > 0) {
+            buffer[position++] = digits[--length];
+        }
+    }
+
+    private void write(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        for (OutputStream out : outs) {
+            out.write(buffer, 0, position);
+        }
+        position = 0;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        for (OutputStream out : outs) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Flush the buffer and close all streams, even if writing to one of them
+     * fails.
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (OutputStream out : outs) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
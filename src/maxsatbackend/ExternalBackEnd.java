@@ -0,0 +1,490 @@
+package maxsatbackend;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.sat4j.core.VecInt;
+
+import util.StatisticPrinter;
+import util.StatisticPrinter.ComponentStatisticKey;
+import util.StatisticPrinter.StatisticKey;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Serializer;
+import checkers.inference.model.Slot;
+import constraintsolver.Lattice;
+
+/**
+ * Solves the clauses of the MaxSat encoding with an external solver binary.
+ * Components without soft clauses are written in DIMACS CNF format, the others
+ * in WCNF format with the hard clauses weighted top and every soft clause
+ * weighted 1, as in the sat4j back end. The solver reports the standard s, v
+ * and o lines on stdout.
+ *
+ * The command is given by the externalCommand solver argument, and
+ * externalSatCommand may give another command for the components without soft
+ * clauses. The input is written to the stdin of the solver, unless the
+ * command has a {file} argument, which is replaced by the path of a file that
+ * has the input. The solvers run in the shared ProcessPool, which runs at most
+ * externalProcesses of them at once, one per core by default.
+ *
+ * @author jianchu
+ *
+ */
+public class ExternalBackEnd extends MaxSatBackEnd {
+
+    protected static final String FILE_ARGUMENT = "{file}";
+
+    // numbers the input files, components may be solved in parallel
+    private static final AtomicInteger nextInputFile = new AtomicInteger();
+    // how long a destroyed solver may take to exit before its streams are
+    // given up
+    private static final long DESTROY_WAIT_MS = 1000;
+
+    protected final ProcessPool processPool;
+    // whether the soft clauses are given to the solver, as WCNF
+    protected boolean isMaxSat;
+    // variables that occur in the input, the solver may report any value for
+    // the others
+    private BitSet variables;
+    // the solver process while it is running, so that cancel can stop it
+    private volatile Process process;
+    // the s line of the solver output
+    private volatile String status;
+
+    public ExternalBackEnd(Map<String, String> configuration, Collection<Slot> slots,
+            Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment, Serializer<VecInt[], VecInt[]> realSerializer,
+            Lattice lattice) {
+        super(configuration, slots, constraints, qualHierarchy, processingEnvironment, realSerializer,
+                lattice);
+        this.processPool = ProcessPool.getInstance(configureProcesses());
+    }
+
+    private int configureProcesses() {
+        String externalProcesses = configuration.get("externalProcesses");
+        if (externalProcesses == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        int processes;
+        try {
+            processes = Integer.parseInt(externalProcesses);
+        } catch (NumberFormatException e) {
+            processes = 0;
+        }
+        if (processes <= 0) {
+            ErrorReporter.errorAbort("externalProcesses should be a positive integer: "
+                    + externalProcesses);
+        }
+        return processes;
+    }
+
+    /**
+     * @return false if the solver only solves CNF, then the soft clauses are
+     *         dropped.
+     */
+    protected boolean solvesSoftClauses() {
+        return true;
+    }
+
+    /**
+     * @return the command that runs the solver, which may have a {file}
+     *         argument, or null if only externalSatCommand is given and the
+     *         component has soft clauses.
+     */
+    protected String getCommand() {
+        String command = configuration.get("externalCommand");
+        String satCommand = configuration.get("externalSatCommand");
+        if (!isMaxSat && satCommand != null) {
+            return satCommand;
+        }
+        if (command == null && satCommand == null) {
+            ErrorReporter.errorAbort("The External back end needs the externalCommand solver argument.");
+        }
+        return command;
+    }
+
+    @Override
+    protected WellFormEncoding configureWellFormEncoding() {
+        WellFormEncoding encoding = super.configureWellFormEncoding();
+        // cardinality constraints cannot be written to the CNF input
+        return encoding == WellFormEncoding.NATIVE ? WellFormEncoding.SEQUENTIAL : encoding;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        Process p = this.process;
+        if (p != null) {
+            p.destroy();
+        }
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        Map<Integer, AnnotationMirror> result = new HashMap<>();
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        this.convertAll();
+        if (stopIfCancelled()) {
+            return result;
+        }
+        generateWellForm();
+        simplifyClauses();
+        if (stopIfCancelled()) {
+            return result;
+        }
+        this.isMaxSat = solvesSoftClauses() && clauses.getNumberOfSoftClauses() > 0;
+        collectVariables();
+        this.solvingStart = System.currentTimeMillis();
+        try {
+            int[] model = runSolver(deadline);
+            if (outcome == Outcome.SOLVED) {
+                result = decode(model);
+            }
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            this.outcome = Outcome.ERROR;
+        }
+        this.solvingEnd = System.currentTimeMillis();
+        recordSolvingTime(solvingEnd - solvingStart);
+        // saving memory of JVM...
+        this.clauses.clear();
+        this.constraints = null;
+        this.variables = null;
+        return result;
+    }
+
+    protected void recordSolvingTime(long solvingTime) {
+        StatisticPrinter.record(StatisticKey.SAT_SOLVING_EXTERNAL_TIME, solvingTime);
+    }
+
+    private void collectVariables() {
+        this.variables = new BitSet(getNumberOfVars() + 1);
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            if (clauses.isSoft(clause) && !isMaxSat) {
+                continue;
+            }
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                variables.set(Math.abs(clauses.getLiteral(i)));
+            }
+        }
+    }
+
+    /**
+     * Write the input of the solver to the given streams, and close them.
+     *
+     * @param outs
+     */
+    protected void writeInput(OutputStream... outs) throws IOException {
+        if (!isMaxSat) {
+            writeCNF(outs);
+            return;
+        }
+        DimacsWriter writer = new DimacsWriter(outs);
+        try {
+            final long top = clauses.getNumberOfSoftClauses() + 1;
+            writer.writeComment("This is the WCNF input");
+            writer.writeWcnfHeader(getNumberOfVars(), clauses.size(), top);
+            for (int clause = 0; clause < clauses.size(); clause++) {
+                writer.writeClause(clauses, clause, clauses.isSoft(clause) ? 1 : top);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Wait until the process pool lets one more solver run.
+     *
+     * @return false if the back end is cancelled or reaches the deadline
+     *         before that.
+     */
+    private boolean acquireProcess(long deadline) throws InterruptedException {
+        while (!cancelled) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                System.out.println("Not solved in " + timeoutMs + " ms!");
+                this.outcome = Outcome.TIMEOUT;
+                return false;
+            }
+            // wake up now and then to see if the back end is cancelled
+            if (processPool.tryAcquire(Math.min(remaining, 100), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        System.out.println("Cancelled!");
+        this.outcome = Outcome.CANCELLED;
+        return false;
+    }
+
+    /**
+     * Run the solver on the clauses.
+     *
+     * @param deadline
+     * @return the literals of the model, if the outcome is SOLVED.
+     */
+    private int[] runSolver(long deadline) throws IOException, InterruptedException,
+            ExecutionException {
+        final String command = getCommand();
+        if (command == null) {
+            System.out.println("No externalCommand for a component with soft clauses!");
+            this.outcome = Outcome.ERROR;
+            return new int[0];
+        }
+        if (!acquireProcess(deadline)) {
+            return new int[0];
+        }
+        File inputFile = null;
+        try {
+            final String fileName = "cnfdata" + nextInputFile.getAndIncrement()
+                    + (isMaxSat ? ".wcnf" : ".txt");
+            final boolean useFile = command.contains(FILE_ARGUMENT);
+            if (useFile) {
+                inputFile = shouldOutputCNF() ? new File(CNFData, fileName) : File.createTempFile(
+                        "cnfdata", isMaxSat ? ".wcnf" : ".txt");
+                writeInput(new FileOutputStream(inputFile));
+            }
+            final Process p = new ProcessBuilder(splitCommand(command, inputFile)).start();
+            this.process = p;
+            if (cancelled) {
+                p.destroy();
+            }
+            // destroying the process of a cancelled back end closes its
+            // streams while they are read
+            Future<int[]> stdout = processPool.read(new Callable<int[]>() {
+                @Override
+                public int[] call() throws IOException {
+                    try {
+                        return parseOutput(p.getInputStream());
+                    } catch (IOException e) {
+                        if (cancelled) {
+                            return new int[0];
+                        }
+                        throw e;
+                    }
+                }
+            });
+            Future<String> stderr = processPool.read(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    try {
+                        return readAll(p.getErrorStream());
+                    } catch (IOException e) {
+                        if (cancelled) {
+                            return "";
+                        }
+                        throw e;
+                    }
+                }
+            });
+            // the solver reads its stdin while its output is read, all on the
+            // pooled threads, so that a solver that stops reading or writing
+            // cannot hold this thread past the deadline
+            Future<Void> stdin = processPool.read(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        if (useFile) {
+                            p.getOutputStream().close();
+                        } else if (shouldOutputCNF()) {
+                            writeInput(p.getOutputStream(), new FileOutputStream(new File(CNFData,
+                                    fileName)));
+                        } else {
+                            writeInput(p.getOutputStream());
+                        }
+                    } catch (IOException e) {
+                        // the solver stopped reading, e.g. because it is
+                        // cancelled
+                        if (!cancelled) {
+                            e.printStackTrace();
+                        }
+                    }
+                    return null;
+                }
+            });
+
+            int[] model;
+            try {
+                await(stdin, deadline);
+                // saving memory of JVM...
+                this.clauses.clear();
+                model = await(stdout, deadline);
+            } catch (TimeoutException e) {
+                stop(p, stdin, stdout, stderr);
+                if (cancelled) {
+                    System.out.println("Cancelled!");
+                    this.outcome = Outcome.CANCELLED;
+                } else {
+                    System.out.println("Not solved in " + timeoutMs + " ms!");
+                    this.outcome = Outcome.TIMEOUT;
+                }
+                return new int[0];
+            }
+            String errors;
+            try {
+                errors = stderr.get(DESTROY_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // a child of a wrapper script holds stderr open after the
+                // solver is done
+                stderr.cancel(true);
+                closeQuietly(p.getErrorStream());
+                errors = "";
+            }
+            if (cancelled) {
+                // the output of a destroyed process is incomplete
+                System.out.println("Cancelled!");
+                this.outcome = Outcome.CANCELLED;
+                return new int[0];
+            }
+            checkStatus(errors);
+            return model;
+        } finally {
+            this.process = null;
+            processPool.release();
+            if (inputFile != null && !shouldOutputCNF()) {
+                inputFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Wait for a stream of the solver until the deadline, or until a while
+     * after the back end is cancelled, if the destroyed solver does not exit.
+     *
+     * @throws TimeoutException
+     *             if the future is not done by then.
+     */
+    private <T> T await(Future<T> future, long deadline) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        long cancelDeadline = Long.MAX_VALUE;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (cancelled && cancelDeadline == Long.MAX_VALUE) {
+                cancelDeadline = now + DESTROY_WAIT_MS;
+            }
+            long remaining = Math.min(deadline, cancelDeadline) - now;
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                // wake up now and then to see if the back end is cancelled
+                return future.get(Math.min(remaining, 100), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Destroy the solver and wait a while for its stdout to end. If it does
+     * not, because the solver ignores the signal or a child of a wrapper
+     * script holds the pipe open, stop waiting for the streams and close them,
+     * so that no thread of the back end blocks on the solver any longer.
+     */
+    private void stop(Process p, Future<?> stdin, Future<?> stdout, Future<?> stderr)
+            throws InterruptedException {
+        p.destroy();
+        try {
+            stdout.get(DESTROY_WAIT_MS, TimeUnit.MILLISECONDS);
+            return;
+        } catch (ExecutionException e) {
+            // the output of a destroyed process is not used
+            return;
+        } catch (TimeoutException e) {
+            stdin.cancel(true);
+            stdout.cancel(true);
+            stderr.cancel(true);
+            closeQuietly(p.getOutputStream());
+            closeQuietly(p.getInputStream());
+            closeQuietly(p.getErrorStream());
+        }
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // the stream is given up
+        }
+    }
+
+    /**
+     * Set the outcome by the s line of the solver output.
+     */
+    private void checkStatus(String errors) {
+        if (status == null) {
+            System.out.println("The external solver gave no answer: " + errors);
+            this.outcome = Outcome.ERROR;
+        } else if (status.equals("UNSATISFIABLE")) {
+            System.out.println("Not solvable!");
+            this.outcome = Outcome.UNSOLVABLE;
+        } else if (status.equals("UNKNOWN")) {
+            // the solver reached its own limits
+            System.out.println("Not solved by the external solver!");
+            this.outcome = Outcome.TIMEOUT;
+        } else if (!status.equals("SATISFIABLE") && !status.equals("OPTIMUM FOUND")) {
+            System.out.println("Unknown answer of the external solver: " + status);
+            this.outcome = Outcome.ERROR;
+        }
+    }
+
+    private static List<String> splitCommand(String command, File inputFile) {
+        List<String> arguments = new ArrayList<String>();
+        for (String argument : command.trim().split("\\s+")) {
+            if (inputFile != null) {
+                argument = argument.replace(FILE_ARGUMENT, inputFile.getAbsolutePath());
+            }
+            arguments.add(argument);
+        }
+        return arguments;
+    }
+
+    /**
+     * Read the s, o and v lines of the solver output.
+     *
+     * @param stdout
+     * @return the literals of the variables in the input.
+     */
+    private int[] parseOutput(InputStream stdout) throws IOException {
+        SolverOutputParser parser = new SolverOutputParser(variables, getNumberOfVars());
+        parser.parse(stdout);
+        this.status = parser.getStatus();
+        if (parser.getCost() >= 0) {
+            componentStatistic.put(ComponentStatisticKey.COST, parser.getCost());
+        }
+        return parser.getModel();
+    }
+
+    private static String readAll(InputStream stream) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -1,37 +1,52 @@
 package maxsatbackend;
 
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.ErrorReporter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
 
+import util.CardinalityUtils;
+import util.ConcurrentBitSet;
 import util.MathUtils;
 import util.StatisticPrinter;
+import util.StatisticPrinter.ComponentStatisticKey;
 import util.StatisticPrinter.StatisticKey;
 import util.VectorUtils;
 import checkers.inference.InferenceMain;
 import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.PreferenceConstraint;
 import checkers.inference.model.Serializer;
 import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
 import constraintsolver.BackEnd;
+import constraintsolver.ConstraintSerializer;
 import constraintsolver.Lattice;
+import constraintsolver.LatticeSolution;
+import constraintsolver.SolutionStore;
 
 /**
  * @author jianchu MaxSat back end converts constraints to VecInt, and solves
@@ -40,10 +55,30 @@ import constraintsolver.Lattice;
 public class MaxSatBackEnd extends BackEnd<VecInt[], VecInt[]> {
 
     protected final SlotManager slotManager;
-    protected final List<VecInt> hardClauses = new LinkedList<VecInt>();
-    protected final List<VecInt> softClauses = new LinkedList<VecInt>();
+    protected ClauseArena clauses = new ClauseArena();
+    // exactly one of each is true, for WellFormEncoding.NATIVE
+    protected final List<VecInt> exactlyOneConstraints = new LinkedList<VecInt>();
+    protected final WellFormEncoding wellFormEncoding;
+    // number of auxiliary variables of the well form encoding
+    protected int auxiliaryVars = 0;
     protected final File CNFData = new File(new File("").getAbsolutePath() + "/cnfData");
-    protected StringBuilder CNFInput = new StringBuilder();
+    // local slot id -> slot id, local slot ids are from 1 to the number of
+    // variable slots of this back end
+    protected int[] slotIdsOfLocal;
+    // slot id -> local slot id, only while the constraints are converted
+    protected int[] localSlotIds;
+    // variable slot ids of the constraints of this back end
+    protected ConcurrentBitSet varSlots;
+    // chunks of constraints that are serialized per serialization thread
+    private static final int CHUNKS_PER_THREAD = 4;
+    // fewer constraints than this are not worth a chunk of their own, so
+    // small back ends are serialized inline
+    private static final int MIN_CHUNK_SIZE = 1024;
+    // shared by all back ends, created by the first one that serializes in
+    // parallel
+    private static ForkJoinPool serializationPool;
+    // the solver while it is solving, so that cancel can stop it
+    private volatile ISolver runningSolver;
 
     private long serializationStart;
     private long serializationEnd;
@@ -57,37 +92,45 @@ public class MaxSatBackEnd extends BackEnd<VecInt[], VecInt[]> {
         super(configuration, slots, constraints, qualHierarchy, processingEnvironment, realSerializer,
                 lattice);
         this.slotManager = InferenceMain.getInstance().getSlotManager();
+        this.wellFormEncoding = configureWellFormEncoding();
 
         if (shouldOutputCNF()) {
             CNFData.mkdir();
         }
     }
 
+    protected WellFormEncoding configureWellFormEncoding() {
+        String encoding = configuration.get("wellFormEncoding");
+        if (encoding == null) {
+            return WellFormEncoding.PAIRWISE;
+        }
+        try {
+            return WellFormEncoding.valueOf(encoding.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            ErrorReporter.errorAbort("wellFormEncoding should be one of "
+                    + Arrays.toString(WellFormEncoding.values()) + ": " + encoding);
+            return null;
+        }
+    }
+
     protected boolean shouldOutputCNF() {
         String outputCNF = configuration.get("outputCNF");
         return outputCNF != null && outputCNF.equals("true");
     }
 
-    protected void buildCNF() {
-        CNFInput.append("c This is the CNF input\n");
-
-        // TODO: We need to handle softclauses at some point...
-        final int totalClauses = hardClauses.size();
-        final int totalVars = slotManager.getNumberOfSlots() * lattice.numTypes;
-
-        CNFInput.append("p cnf ");
-        CNFInput.append(totalVars);
-        CNFInput.append(" ");
-        CNFInput.append(totalClauses);
-        CNFInput.append("\n");
+    protected boolean shouldSimplifyClauses() {
+        String simplifyClauses = configuration.get("simplifyClauses");
+        return simplifyClauses != null && simplifyClauses.equals("true");
+    }
 
-        for (VecInt clause : hardClauses) {
-            int[] literals = clause.toArray();
-            for (int i = 0; i < literals.length; i++) {
-                CNFInput.append(literals[i]);
-                CNFInput.append(" ");
-            }
-            CNFInput.append("0\n");
+    /**
+     * Remove duplicated clauses, tautologies and clauses subsumed by hard unit
+     * clauses, if simplifyClauses is true. It is called after the well form
+     * clauses are generated, so that they are simplified too.
+     */
+    protected void simplifyClauses() {
+        if (shouldSimplifyClauses()) {
+            this.clauses = new ClausePreprocessor(getNumberOfVars()).simplify(clauses);
         }
     }
 
@@ -96,105 +139,447 @@ public class MaxSatBackEnd extends BackEnd<VecInt[], VecInt[]> {
     }
 
     protected void writeCNFInput(String file) {
-        String writePath = CNFData.getAbsolutePath() + "/" + file;
-        File f = new File(writePath);
-        PrintWriter pw;
         try {
-            pw = new PrintWriter(f);
-            pw.write(CNFInput.toString());
-            // saving memory of JVM...
-            this.CNFInput = null;
-            pw.close();
-        } catch (FileNotFoundException e) {
+            writeCNF(new FileOutputStream(new File(CNFData, file)));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Convert constraints to list of VecInt.
+     * Write the hard clauses in DIMACS format to the given streams, and close
+     * them.
+     *
+     * @param outs
+     */
+    protected void writeCNF(OutputStream... outs) throws IOException {
+        DimacsWriter writer = new DimacsWriter(outs);
+        try {
+            writer.writeComment("This is the CNF input");
+            // TODO: We need to handle softclauses at some point...
+            writer.writeHeader(getNumberOfVars(), clauses.getNumberOfHardClauses());
+            for (int clause = 0; clause < clauses.size(); clause++) {
+                if (!clauses.isSoft(clause)) {
+                    writer.writeClause(clauses, clause);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Convert constraints to clauses. The slots of this back end are
+     * numbered from 1 in the clauses, so the number of SAT variables only
+     * depends on the size of this back end and not on the whole program.
+     *
+     * The constraints are split into chunks, each chunk is serialized into
+     * its own clauses, which are renumbered to local slot ids once all
+     * variable slots are known and then concatenated. The chunks are encoded
+     * on a fork-join pool that is shared by all back ends, if there is more
+     * than one serialization thread and more than one chunk.
      */
     @Override
     public void convertAll() {
-        for (Constraint constraint : constraints) {
-            collectVarSlots(constraint);
-            for (VecInt res : constraint.serialize(realSerializer)) {
-                if (res != null && res.size() != 0) {
-                    if (constraint instanceof PreferenceConstraint) {
-                        softClauses.add(res);
-                    } else {
-                        hardClauses.add(res);
+        final List<Constraint> constraintList = new ArrayList<Constraint>(constraints);
+        final int numberOfChunks = serializationThreads > 1 ? Math.max(1,
+                Math.min(constraintList.size() / MIN_CHUNK_SIZE, serializationThreads * CHUNKS_PER_THREAD))
+                : 1;
+        final int chunkSize = (constraintList.size() + numberOfChunks - 1) / numberOfChunks;
+        final ClauseArena[] chunkClauses = new ClauseArena[numberOfChunks];
+        final long[] collapsedClauses = new long[numberOfChunks];
+        ForkJoinPool pool = numberOfChunks > 1 ? getSerializationPool(serializationThreads) : null;
+        final MaxSatSerializer maxSatSerializer = getMaxSatSerializer();
+        // the largest slot id, to size the set of variable slots
+        List<Callable<Integer>> maxSlotIds = new ArrayList<Callable<Integer>>();
+        for (int c = 0; c < numberOfChunks; c++) {
+            final List<Constraint> chunk = getChunk(constraintList, c, chunkSize);
+            maxSlotIds.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int maxSlotId = 0;
+                    for (Constraint constraint : chunk) {
+                        for (Slot slot : constraint.getSlots()) {
+                            maxSlotId = Math.max(maxSlotId, ((VariableSlot) slot).getId());
+                        }
+                    }
+                    return maxSlotId;
+                }
+            });
+        }
+        int maxSlotId = 0;
+        for (Integer chunkMax : runChunks(pool, maxSlotIds)) {
+            maxSlotId = Math.max(maxSlotId, chunkMax);
+        }
+        this.varSlots = new ConcurrentBitSet(maxSlotId + 1);
+
+        List<Callable<Void>> serializations = new ArrayList<Callable<Void>>();
+        for (int c = 0; c < numberOfChunks; c++) {
+            final int index = c;
+            final List<Constraint> chunk = getChunk(constraintList, c, chunkSize);
+            serializations.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    ClauseArena arena = new ClauseArena();
+                    for (Constraint constraint : chunk) {
+                        if (cancelled) {
+                            break;
+                        }
+                        collectVarSlots(constraint);
+                        if (slotAliases != null && slotAliases.isCollapsed(constraint)) {
+                            // the 2 * numTypes implications between the two slots
+                            collapsedClauses[index] += 2 * lattice.numTypes;
+                            continue;
+                        }
+                        if (maxSatSerializer != null) {
+                            maxSatSerializer.serialize(constraint, arena);
+                            continue;
+                        }
+                        for (VecInt res : constraint.serialize(realSerializer)) {
+                            if (res != null && res.size() != 0) {
+                                arena.addClause(res, constraint instanceof PreferenceConstraint);
+                            }
+                        }
+                    }
+                    chunkClauses[index] = arena;
+                    return null;
+                }
+            });
+        }
+        runChunks(pool, serializations);
+        if (cancelled) {
+            // the clauses are incomplete, solve stops before it uses them
+            return;
+        }
+        numberSlots();
+
+        List<Callable<Void>> renumberings = new ArrayList<Callable<Void>>();
+        for (final ClauseArena arena : chunkClauses) {
+            renumberings.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < arena.getNumberOfLiterals(); i++) {
+                        arena.setLiteral(i, toLocal(arena.getLiteral(i)));
                     }
+                    return null;
+                }
+            });
+        }
+        runChunks(pool, renumberings);
+        // saving memory of JVM...
+        this.localSlotIds = null;
+        long collapsed = 0;
+        for (int c = 0; c < numberOfChunks; c++) {
+            clauses.addAll(chunkClauses[c]);
+            chunkClauses[c] = null;
+            collapsed += collapsedClauses[c];
+        }
+        if (slotAliases != null) {
+            StatisticPrinter.record(StatisticKey.COLLAPSED_CLAUSES_SIZE, collapsed);
+        }
+    }
+
+    /**
+     * @return the MaxSatSerializer behind the serializer of this back end, or
+     *         null if it is another serializer, whose clauses are then added
+     *         one VecInt at a time.
+     */
+    private MaxSatSerializer getMaxSatSerializer() {
+        Serializer<?, ?> serializer = realSerializer;
+        if (serializer instanceof ConstraintSerializer) {
+            serializer = ((ConstraintSerializer<?, ?>) serializer).realSerializer;
+        }
+        return serializer instanceof MaxSatSerializer ? (MaxSatSerializer) serializer : null;
+    }
+
+    /**
+     * @param threads
+     *            the parallelism of the pool, only the one given by the first
+     *            call is used
+     * @return the pool that serializes the chunks of all back ends.
+     */
+    private static synchronized ForkJoinPool getSerializationPool(int threads) {
+        if (serializationPool == null) {
+            // the threads of a fork-join pool are daemon threads, so the pool
+            // does not keep the JVM alive
+            serializationPool = new ForkJoinPool(threads);
+        }
+        return serializationPool;
+    }
+
+    private static List<Constraint> getChunk(List<Constraint> constraints, int chunk, int chunkSize) {
+        int from = Math.min(constraints.size(), chunk * chunkSize);
+        return constraints.subList(from, Math.min(constraints.size(), from + chunkSize));
+    }
+
+    /**
+     * Run the tasks of all chunks, on the pool if there is one.
+     *
+     * @return the results of the tasks, in the order of the tasks.
+     */
+    private <T> List<T> runChunks(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (pool == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ErrorReporter.errorAbort("interrupted while serializing constraints.");
+        } catch (Exception e) {
+            e.printStackTrace();
+            ErrorReporter.errorAbort("failed to serialize constraints: " + e);
         }
+        return results;
     }
 
     /**
-     * generate well form clauses such that there is one and only one beta value
-     * can be true.
+     * Mark the variable slots of the constraint, as the representatives of
+     * their aliases. Chunks of constraints may be collected by several
+     * threads at once.
+     */
+    @Override
+    public void collectVarSlots(Constraint constraint) {
+        for (Slot slot : constraint.getSlots()) {
+            if (!(slot instanceof ConstantSlot)) {
+                int id = ((VariableSlot) slot).getId();
+                this.varSlots.set(slotAliases == null ? id : slotAliases.getRepresentative(id));
+            }
+        }
+    }
+
+    /**
+     * Give each collected variable slot a local slot id, in the order of slot
+     * ids.
+     */
+    protected void numberSlots() {
+        this.slotIdsOfLocal = new int[varSlots.cardinality() + 1];
+        this.localSlotIds = new int[varSlots.size()];
+        int localSlotId = 1;
+        for (int id = varSlots.nextSetBit(0); id >= 0; id = varSlots.nextSetBit(id + 1)) {
+            slotIdsOfLocal[localSlotId] = id;
+            localSlotIds[id] = localSlotId++;
+        }
+    }
+
+    protected int getNumberOfLocalSlots() {
+        return slotIdsOfLocal.length - 1;
+    }
+
+    /**
+     * @return the number of SAT variables of slots and of the well form
+     *         encoding.
+     */
+    protected int getNumberOfVars() {
+        return getNumberOfLocalSlots() * lattice.numTypes + auxiliaryVars;
+    }
+
+    /**
+     * Replace the SAT variable of a slot id in the given literal by the SAT
+     * variable of its local slot id.
      *
-     * @param clauses
+     * @param literal
+     * @return
+     */
+    protected int toLocal(int literal) {
+        int var = Math.abs(literal) - 1;
+        int localSlotId = localSlotIds[MathUtils.getSlotId(var, lattice)];
+        int localVar = MathUtils.mapIdToMatrixEntry(localSlotId, MathUtils.getIntRep(var, lattice),
+                lattice);
+        return literal > 0 ? localVar : -localVar;
+    }
+
+    /**
+     * generate well form clauses such that there is one and only one beta value
+     * can be true. With WellFormEncoding.NATIVE, cardinality constraints are
+     * collected in exactlyOneConstraints instead of clauses.
      */
-    protected void generateWellForm(List<VecInt> clauses) {
-        for (Integer id : this.varSlotIds) {
+    protected void generateWellForm() {
+        final int clausesBefore = clauses.size();
+        // the clauses of one slot, before they are added to the hard clauses
+        final List<VecInt> wellForm = new ArrayList<VecInt>();
+        int nextVar = getNumberOfLocalSlots() * lattice.numTypes + 1;
+        for (int id = 1; id <= getNumberOfLocalSlots(); id++) {
             int[] leastOneIsTrue = new int[lattice.numTypes];
             for (Integer i : lattice.intToType.keySet()) {
                 leastOneIsTrue[i] = MathUtils.mapIdToMatrixEntry(id, i.intValue(), lattice);
             }
-            clauses.add(VectorUtils.asVec(leastOneIsTrue));
-            List<Integer> varList = new ArrayList<Integer>(lattice.intToType.keySet());
-            for (int i = 0; i < varList.size(); i++) {
-                for (int j = i + 1; j < varList.size(); j++) {
-                    VecInt vecInt = new VecInt(2);
-                    vecInt.push(-MathUtils.mapIdToMatrixEntry(id, varList.get(i), lattice));
-                    vecInt.push(-MathUtils.mapIdToMatrixEntry(id, varList.get(j), lattice));
-                    clauses.add(vecInt);
-                }
+            switch (wellFormEncoding) {
+            case NATIVE:
+                exactlyOneConstraints.add(VectorUtils.asVec(leastOneIsTrue));
+                break;
+            case SEQUENTIAL:
+                clauses.addClause(leastOneIsTrue, false);
+                nextVar = CardinalityUtils.atMostOneSequential(leastOneIsTrue, wellForm, nextVar);
+                break;
+            case COMMANDER:
+                clauses.addClause(leastOneIsTrue, false);
+                nextVar = CardinalityUtils.atMostOneCommander(leastOneIsTrue, wellForm, nextVar);
+                break;
+            default:
+                clauses.addClause(leastOneIsTrue, false);
+                CardinalityUtils.atMostOnePairwise(leastOneIsTrue, wellForm);
             }
+            for (VecInt clause : wellForm) {
+                clauses.addClause(clause, false);
+            }
+            wellForm.clear();
         }
+        this.auxiliaryVars = nextVar - 1 - getNumberOfLocalSlots() * lattice.numTypes;
+        StatisticPrinter.record(StatisticKey.WELL_FORM_CLAUSES_SIZE, (long) (clauses.size() - clausesBefore));
+        StatisticPrinter.record(StatisticKey.WELL_FORM_AUXILIARY_VARIABLE_SIZE, (long) auxiliaryVars);
+        StatisticPrinter.record(StatisticKey.WELL_FORM_CARDINALITY_SIZE, (long) exactlyOneConstraints.size());
     }
 
     protected Map<Integer, AnnotationMirror> decode(int[] solution) {
-        Map<Integer, AnnotationMirror> result = new HashMap<>();
-        for (Integer var : solution) {
-            if (var > 0) {
-                var = var - 1;
-                int slotId = MathUtils.getSlotId(var, lattice);
-                AnnotationMirror type = lattice.intToType.get(MathUtils.getIntRep(var, lattice));
-                result.put(slotId, type);
+        final int numberOfLocalSlots = getNumberOfLocalSlots();
+        final int totalVars = numberOfLocalSlots * lattice.numTypes;
+        // local slot -> int representation of its type
+        int[] localTypes = new int[numberOfLocalSlots + 1];
+        Arrays.fill(localTypes, SolutionStore.NO_TYPE);
+        for (int var : solution) {
+            // variables above totalVars are not slots, e.g. selectors of
+            // soft clauses
+            if (var > 0 && var <= totalVars) {
+                localTypes[MathUtils.getSlotId(var - 1, lattice)] = MathUtils.getIntRep(var - 1, lattice);
+            }
+        }
+        LatticeSolution result = new LatticeSolution(lattice, numberOfLocalSlots);
+        for (int local = 1; local <= numberOfLocalSlots; local++) {
+            if (localTypes[local] == SolutionStore.NO_TYPE) {
+                continue;
+            }
+            int slotId = slotIdsOfLocal[local];
+            result.add(slotId, localTypes[local]);
+            if (slotAliases != null) {
+                // copy the solution of a representative to its group
+                for (int member = slotAliases.getNextMember(slotId); member != slotId; member = slotAliases
+                        .getNextMember(member)) {
+                    result.add(member, localTypes[local]);
+                }
             }
         }
         return result;
     }
 
+    protected boolean shouldPropagateUnits() {
+        String propagateUnits = configuration.get("propagateUnits");
+        return propagateUnits != null && propagateUnits.equals("true");
+    }
+
+    /**
+     * Fix the literals that are forced by unit clauses, and keep only the
+     * residual formula in clauses and exactlyOneConstraints.
+     *
+     * @return the propagator that has the fixed literals, or null if the hard
+     *         clauses are unsatisfiable.
+     */
+    protected UnitPropagator propagateUnits() {
+        UnitPropagator propagator = new UnitPropagator(getNumberOfVars());
+        final int clausesBefore = clauses.size();
+        if (!propagator.propagate(clauses, exactlyOneConstraints)) {
+            return null;
+        }
+        this.clauses = propagator.getResidualClauses();
+        this.exactlyOneConstraints.clear();
+        this.exactlyOneConstraints.addAll(propagator.getResidualExactlyOne());
+
+        final long fixedVars = propagator.getNumberOfFixedVars();
+        final long eliminatedClauses = clausesBefore - clauses.size();
+        StatisticPrinter.record(StatisticKey.PROPAGATION_FIXED_VARIABLE_SIZE, fixedVars);
+        StatisticPrinter.record(StatisticKey.PROPAGATION_ELIMINATED_CLAUSES_SIZE, eliminatedClauses);
+        if (propagator.isSolved()) {
+            StatisticPrinter.record(StatisticKey.PROPAGATION_SOLVED_COMPONENTS_SIZE, (long) 1);
+        }
+        componentStatistic.put(ComponentStatisticKey.FIXED_VARIABLE_SIZE, fixedVars);
+        componentStatistic.put(ComponentStatisticKey.ELIMINATED_CLAUSES_SIZE, eliminatedClauses);
+        return propagator;
+    }
+
     @Override
     public Map<Integer, AnnotationMirror> solve() {
         Map<Integer, AnnotationMirror> result = new HashMap<>();
-        final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(org.sat4j.pb.SolverFactory.newBoth());
         this.serializationStart = System.currentTimeMillis();
         this.convertAll();
         this.serializationEnd = System.currentTimeMillis();
         StatisticPrinter.record(StatisticKey.SAT_SERIALIZATION_TIME,
                 (serializationEnd - serializationStart));
-        generateWellForm(hardClauses);
+        if (stopIfCancelled()) {
+            return result;
+        }
+        generateWellForm();
+        simplifyClauses();
+        if (stopIfCancelled()) {
+            return result;
+        }
         if (shouldOutputCNF()) {
-            buildCNF();
             writeCNFInput();
         }
+        UnitPropagator propagator = null;
+        if (shouldPropagateUnits()) {
+            propagator = propagateUnits();
+            if (propagator == null || propagator.isSolved()) {
+                if (propagator == null) {
+                    System.out.println("Not solvable!");
+                    this.outcome = Outcome.UNSOLVABLE;
+                } else {
+                    result = decode(propagator.getModel(new int[0]));
+                }
+                // saving memory of JVM...
+                this.constraints = null;
+                return result;
+            }
+        }
+        if (stopIfCancelled()) {
+            return result;
+        }
         // printClauses();
+        // without soft clauses there is nothing to optimize, so a plain SAT
+        // solver is enough
+        final boolean pureSat = clauses.getNumberOfSoftClauses() == 0;
+        final WeightedMaxSatDecorator maxSatSolver = pureSat ? null : new WeightedMaxSatDecorator(
+                org.sat4j.pb.SolverFactory.newBoth());
+        final ISolver solver = pureSat ? org.sat4j.minisat.SolverFactory.newDefault() : maxSatSolver;
         configureSatSolver(solver);
+        this.runningSolver = solver;
 
         try {
-            for (VecInt hardClause : hardClauses) {
-                solver.addHardClause(hardClause);
+            // sat4j copies the literals, so one vector is enough
+            final VecInt clause = new VecInt();
+            for (int i = 0; i < clauses.size(); i++) {
+                if (clauses.isSoft(i)) {
+                    continue;
+                }
+                if (pureSat) {
+                    solver.addClause(clauses.toVec(i, clause));
+                } else {
+                    maxSatSolver.addHardClause(clauses.toVec(i, clause));
+                }
+            }
+
+            for (VecInt exactlyOne : exactlyOneConstraints) {
+                solver.addExactly(exactlyOne, 1);
             }
             // saving memory of JVM...
-            this.hardClauses.clear();
+            this.exactlyOneConstraints.clear();
 
-            for (VecInt softclause : softClauses) {
-                solver.addSoftClause(softclause);
+            for (int i = 0; i < clauses.size(); i++) {
+                if (clauses.isSoft(i)) {
+                    maxSatSolver.addSoftClause(clauses.toVec(i, clause));
+                }
             }
+            // saving memory of JVM...
+            this.clauses.clear();
 
+            if (cancelled) {
+                throw new TimeoutException("cancelled before solving");
+            }
             this.solvingStart = System.currentTimeMillis();
             boolean isSatisfiable = solver.isSatisfiable();
             this.solvingEnd = System.currentTimeMillis();
@@ -204,7 +589,10 @@ public class MaxSatBackEnd extends BackEnd<VecInt[], VecInt[]> {
             boolean parallel = (configuration.get("solveInParallel") == null || configuration.get(
                     "solveInParallel").equals("true")) ? true : false;
             long solvingTime = solvingEnd - solvingStart;
-            if (graph) {
+            if (pureSat) {
+                StatisticPrinter.record(StatisticKey.SAT_SOLVING_PURE_SAT_TIME, solvingTime);
+                StatisticPrinter.record(StatisticKey.PURE_SAT_COMPONENTS_SIZE, (long) 1);
+            } else if (graph) {
                 if (parallel) {
                     StatisticPrinter.record(StatisticKey.SAT_SOLVING_GRAPH_PARALLEL_TIME, solvingTime);
                 } else {
@@ -215,61 +603,99 @@ public class MaxSatBackEnd extends BackEnd<VecInt[], VecInt[]> {
             }
 
             if (isSatisfiable) {
-            // saving memory of JVM...
-            this.softClauses.clear();
-                result = decode(solver.model());
+                int[] model = solver.model();
+                result = decode(propagator == null ? model : propagator.getModel(model));
                 // PrintUtils.printResult(result);
             } else {
                 System.out.println("Not solvable!");
+                this.outcome = Outcome.UNSOLVABLE;
             }
 
+        } catch (ContradictionException e) {
+            // the hard clauses are trivially unsatisfiable
+            System.out.println("Not solvable!");
+            this.outcome = Outcome.UNSOLVABLE;
+        } catch (TimeoutException e) {
+            System.out.println(cancelled ? "Cancelled!" : "Not solved in " + timeoutMs + " ms!");
+            this.outcome = cancelled ? Outcome.CANCELLED : Outcome.TIMEOUT;
         } catch (Throwable e) {
             e.printStackTrace();
+            this.outcome = Outcome.ERROR;
         }
         // saving memory of JVM...
+        this.runningSolver = null;
         this.constraints = null;
         return result;
     }
 
+    /**
+     * Stop solving if the back end is cancelled. Encoding a large component
+     * takes a while, so solve checks between its stages instead of only
+     * before the solver runs.
+     *
+     * @return true if the back end is cancelled.
+     */
+    protected boolean stopIfCancelled() {
+        if (!cancelled) {
+            return false;
+        }
+        System.out.println("Cancelled!");
+        this.outcome = Outcome.CANCELLED;
+        // saving memory of JVM...
+        this.clauses.clear();
+        this.exactlyOneConstraints.clear();
+        this.constraints = null;
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        ISolver solver = this.runningSolver;
+        if (solver != null) {
+            solver.expireTimeout();
+        }
+    }
+
     /**
      * sat solver configuration Configure
      *
      * @param solver
      */
-    private void configureSatSolver(WeightedMaxSatDecorator solver) {
-        final int totalVars = (slotManager.getNumberOfSlots() * lattice.numTypes);
-        final int totalClauses = hardClauses.size() + softClauses.size();
+    private void configureSatSolver(ISolver solver) {
+        final int totalVars = getNumberOfVars();
+        final int totalClauses = clauses.size();
 
         solver.newVar(totalVars);
         solver.setExpectedNumberOfClauses(totalClauses);
         StatisticPrinter.record(StatisticKey.CNF_CLAUSES_SIZE, (long) totalClauses);
         countVariables();
-        solver.setTimeoutMs(1000000);
+        solver.setTimeoutMs(timeoutMs);
     }
 
     protected void countVariables() {
-
-        Set<Integer> vars = new HashSet<Integer>();
-        for (VecInt vi : hardClauses) {
-            for (int i : vi.toArray()) {
-                vars.add(i);
+        boolean[] seen = new boolean[getNumberOfVars() + 1];
+        long vars = 0;
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            if (clauses.isSoft(clause)) {
+                continue;
+            }
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                int var = Math.abs(clauses.getLiteral(i));
+                if (!seen[var]) {
+                    seen[var] = true;
+                    vars++;
+                }
             }
         }
-        StatisticPrinter.record(StatisticKey.CNF_VARIABLE_SIZE, (long) vars.size());
+        StatisticPrinter.record(StatisticKey.CNF_VARIABLE_SIZE, vars);
     }
 
     /**
      * print all soft and hard clauses for testing.
      */
     protected void printClauses() {
-        System.out.println("Hard clauses: ");
-        for (VecInt hardClause : hardClauses) {
-            System.out.println(hardClause);
-        }
-        System.out.println();
-        System.out.println("Soft clauses: ");
-        for (VecInt softClause : softClauses) {
-            System.out.println(softClause);
-        }
+        System.out.println("Hard and soft clauses: ");
+        System.out.print(clauses);
     }
 }
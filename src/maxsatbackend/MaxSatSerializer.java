@@ -2,22 +2,20 @@ package maxsatbackend;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.lang.model.element.AnnotationMirror;
 
 import org.sat4j.core.VecInt;
 
-import util.ConstantUtils;
 import util.MathUtils;
-import util.VectorUtils;
 import checkers.inference.model.CombVariableSlot;
 import checkers.inference.model.CombineConstraint;
 import checkers.inference.model.ComparableConstraint;
 import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
 import checkers.inference.model.EqualityConstraint;
 import checkers.inference.model.ExistentialConstraint;
 import checkers.inference.model.ExistentialVariableSlot;
@@ -25,14 +23,17 @@ import checkers.inference.model.InequalityConstraint;
 import checkers.inference.model.PreferenceConstraint;
 import checkers.inference.model.RefinementVariableSlot;
 import checkers.inference.model.Serializer;
+import checkers.inference.model.Slot;
 import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.model.VariableSlot;
 import constraintsolver.Lattice;
-import constraintsolver.VariableCombos;
+import constraintsolver.SlotAliases;
 
 /**
- * The serializer for maxsat back end. Converting constraints to VecInt
- * 
+ * The serializer for maxsat back end. Converting constraints to clauses,
+ * either straight into a ClauseArena or as VecInt for the Serializer
+ * interface.
+ *
  * @author jianchu
  *
  */
@@ -40,296 +41,355 @@ import constraintsolver.VariableCombos;
 public class MaxSatSerializer implements Serializer<VecInt[], VecInt[]> {
 
     protected final Lattice lattice;
+    protected SlotAliases slotAliases;
+
+    // clause templates that only depend on the lattice, see instantiate
+    // constant type -> clauses of subtype constraint constant <: variable
+    private final int[][][] subtypeConstantVariable;
+    // constant type -> clauses of subtype constraint variable <: constant
+    private final int[][][] subtypeVariableConstant;
+    private int[][] subtypeVariableVariable;
+    private int[][] equalityVariableVariable;
+    private int[][] inequalityVariableVariable;
+    private int[][] comparableVariableVariable;
+    // constant slot id -> type, may be filled by several threads at once
+    private final Map<Integer, Integer> constantTypes = new ConcurrentHashMap<Integer, Integer>();
 
     public MaxSatSerializer(Lattice lattice) {
         this.lattice = lattice;
+        this.subtypeConstantVariable = new int[lattice.numTypes][][];
+        this.subtypeVariableConstant = new int[lattice.numTypes][][];
+        buildConstantTemplates();
+        buildVariableTemplates();
     }
 
-    @Override
-    public VecInt[] serialize(SubtypeConstraint constraint) {
-        return new SubtypeVariableCombos(emptyClauses).accept(constraint.getSubtype(), constraint.getSupertype(), constraint);
+    /**
+     * Encode each variable slot as the representative of its aliases.
+     *
+     * @param slotAliases
+     */
+    public void setSlotAliases(SlotAliases slotAliases) {
+        this.slotAliases = slotAliases;
     }
 
-    protected class SubtypeVariableCombos extends VariableCombos<SubtypeConstraint, VecInt[]> {
-        final Set<AnnotationMirror> mustNotBe = new HashSet<AnnotationMirror>();
-
-        public SubtypeVariableCombos(VecInt[] emptyValue) {
-            super(emptyValue);
-        }
+    /**
+     * The id of the slot in the encoding, which is the id of its
+     * representative if slots are aliased.
+     *
+     * @param slot
+     * @return
+     */
+    protected int getId(VariableSlot slot) {
+        return slotAliases == null ? slot.getId() : slotAliases.getRepresentative(slot.getId());
+    }
 
-        @Override
-        protected VecInt[] constant_variable(ConstantSlot subtype, VariableSlot supertype, SubtypeConstraint constraint) {
-            if (ConstantUtils.areSameType(subtype.getValue(), lattice.top)) {
-                return VectorUtils.asVecArray(MathUtils.mapIdToMatrixEntry(supertype.getId(), lattice.top, lattice));
-            }
-            if (lattice.subType.get(subtype.getValue()) != null) {
-                mustNotBe.addAll(lattice.subType.get(subtype.getValue()));
+    /**
+     * Write the clauses of the constraint into the arena. The clauses of a
+     * constraint between two slots are instantiated from the templates of the
+     * lattice by adding the offsets of the slots to the template literals, so
+     * no clause is built as a VecInt or an array of its own.
+     *
+     * @param constraint
+     * @param arena
+     */
+    public void serialize(Constraint constraint, ClauseArena arena) {
+        if (constraint instanceof SubtypeConstraint) {
+            SubtypeConstraint subtype = (SubtypeConstraint) constraint;
+            writeSubtype(subtype.getSubtype(), subtype.getSupertype(), arena);
+        } else if (constraint instanceof EqualityConstraint) {
+            EqualityConstraint equality = (EqualityConstraint) constraint;
+            writeEquality(equality.getFirst(), equality.getSecond(), arena);
+        } else if (constraint instanceof InequalityConstraint) {
+            InequalityConstraint inequality = (InequalityConstraint) constraint;
+            writeInequality(inequality.getFirst(), inequality.getSecond(), arena);
+        } else if (constraint instanceof ComparableConstraint) {
+            ComparableConstraint comparable = (ComparableConstraint) constraint;
+            if (!(comparable.getFirst() instanceof ConstantSlot)
+                    && !(comparable.getSecond() instanceof ConstantSlot)) {
+                write(comparableVariableVariable, getId((VariableSlot) comparable.getFirst()),
+                        getId((VariableSlot) comparable.getSecond()), arena);
             }
-
-            if (lattice.incomparableType.keySet().contains(subtype.getValue())) {
-                mustNotBe.addAll(lattice.incomparableType.get(subtype.getValue()));
+        } else if (constraint instanceof PreferenceConstraint) {
+            // TODO: we should consider the situation that the type annotations
+            // with different weights.
+            PreferenceConstraint preference = (PreferenceConstraint) constraint;
+            int type = getType(preference.getGoal());
+            if (type >= 0) {
+                arena.addLiteral(MathUtils.mapIdToMatrixEntry(getId(preference.getVariable()), type, lattice));
+                arena.endClause(true);
             }
-            return getMustNotBe(mustNotBe, supertype, subtype);
         }
+        // existential and combine constraints have no clauses
+    }
 
-        @Override
-        protected VecInt[] variable_constant(VariableSlot subtype, ConstantSlot supertype, SubtypeConstraint constraint) {
-
-            if (ConstantUtils.areSameType(supertype.getValue(), lattice.bottom)) {
-                return VectorUtils.asVecArray(MathUtils.mapIdToMatrixEntry(subtype.getId(), lattice.bottom, lattice));
+    private void writeSubtype(Slot subtype, Slot supertype, ClauseArena arena) {
+        if (subtype instanceof ConstantSlot) {
+            if (supertype instanceof ConstantSlot) {
+                return;
             }
-
-            if (lattice.superType.get(supertype.getValue()) != null) {
-                mustNotBe.addAll(lattice.superType.get(supertype.getValue()));
+            int type = getType((ConstantSlot) subtype);
+            if (type >= 0) {
+                write(subtypeConstantVariable[type], getId((VariableSlot) supertype), 0, arena);
+            }
+        } else if (supertype instanceof ConstantSlot) {
+            int type = getType((ConstantSlot) supertype);
+            if (type >= 0) {
+                write(subtypeVariableConstant[type], getId((VariableSlot) subtype), 0, arena);
             }
-            if (lattice.incomparableType.keySet().contains(supertype.getValue())) {
-                mustNotBe.addAll(lattice.incomparableType.get(supertype.getValue()));
+        } else {
+            int subtypeId = getId((VariableSlot) subtype);
+            int supertypeId = getId((VariableSlot) supertype);
+            if (subtypeId != supertypeId) {
+                write(subtypeVariableVariable, subtypeId, supertypeId, arena);
             }
-            return getMustNotBe(mustNotBe, subtype, supertype);
         }
+    }
 
-        @Override
-        protected VecInt[] variable_variable(VariableSlot subtype,  VariableSlot supertype, SubtypeConstraint constraint) {
-
-            // if subtype is top, then supertype is top.
-            // if supertype is bottom, then subtype is bottom.
-            VecInt supertypeOfTop = VectorUtils.asVec(
-                    -MathUtils.mapIdToMatrixEntry(subtype.getId(), lattice.top, lattice),
-                    MathUtils.mapIdToMatrixEntry(supertype.getId(), lattice.top, lattice));
-            VecInt subtypeOfBottom = VectorUtils.asVec(
-                    -MathUtils.mapIdToMatrixEntry(supertype.getId(), lattice.bottom, lattice),
-                    MathUtils.mapIdToMatrixEntry(subtype.getId(), lattice.bottom, lattice));
-
-            List<VecInt> resultList = new ArrayList<VecInt>();
-            for (AnnotationMirror type : lattice.getAllTypes()) {
-                // if we know subtype
-                if (!ConstantUtils.areSameType(type, lattice.top)) {
-                    resultList.add(VectorUtils.asVec(getMaybe(type, subtype, supertype,
-                            lattice.superType.get(type))));
-                }
-
-                // if we know supertype
-                if (!ConstantUtils.areSameType(type, lattice.bottom)) {
-                    resultList.add(VectorUtils.asVec(getMaybe(type, supertype, subtype,
-                            lattice.subType.get(type))));
-                }
+    private void writeEquality(Slot slot1, Slot slot2, ClauseArena arena) {
+        if (slot1 instanceof ConstantSlot) {
+            if (!(slot2 instanceof ConstantSlot)) {
+                writeUnit((ConstantSlot) slot1, (VariableSlot) slot2, true, arena);
+            }
+        } else if (slot2 instanceof ConstantSlot) {
+            writeUnit((ConstantSlot) slot2, (VariableSlot) slot1, true, arena);
+        } else {
+            int id1 = getId((VariableSlot) slot1);
+            int id2 = getId((VariableSlot) slot2);
+            // aliases of the same slot are equal anyway
+            if (id1 != id2) {
+                // a <=> b which is the same as (!a v b) & (!b v a)
+                write(equalityVariableVariable, id1, id2, arena);
             }
-            resultList.add(supertypeOfTop);
-            resultList.add(subtypeOfBottom);
-            VecInt[] result = resultList.toArray(new VecInt[resultList.size()]);
-            return result;
         }
+    }
 
-        @Override
-        protected VecInt[] constant_constant(ConstantSlot subtype, ConstantSlot supertype,
-                SubtypeConstraint constraint) {
-//                if (!ConstantUtils.checkConstant(subtype, supertype, constraint)) {
-//                    ErrorReporter.errorAbort("Confliction in subtype constraint: " + subtype.getValue()
-//                            + " is not subtype of " + supertype.getValue());
-//                }
-            return defaultAction(subtype, supertype, constraint);
+    private void writeInequality(Slot slot1, Slot slot2, ClauseArena arena) {
+        if (slot1 instanceof ConstantSlot) {
+            if (!(slot2 instanceof ConstantSlot)) {
+                writeUnit((ConstantSlot) slot1, (VariableSlot) slot2, false, arena);
+            }
+        } else if (slot2 instanceof ConstantSlot) {
+            writeUnit((ConstantSlot) slot2, (VariableSlot) slot1, false, arena);
+        } else {
+            // a <=> !b which is the same as (!a v !b) & (b v a)
+            write(inequalityVariableVariable, getId((VariableSlot) slot1), getId((VariableSlot) slot2), arena);
         }
     }
 
     /**
-     * for subtype constraint, if supertype is constant slot, then the subtype
-     * cannot be the super type of supertype, same for subtype
-     * 
-     * @param mustNotBe
-     * @param vSlot
-     * @param cSlot
-     * @return
+     * Write the hard unit clause that the variable slot is, or is not, the
+     * type of the constant slot.
      */
-    private VecInt[] getMustNotBe(Set<AnnotationMirror> mustNotBe, VariableSlot vSlot, ConstantSlot cSlot) {
-
-        List<Integer> resultList = new ArrayList<Integer>();
-
-        for (AnnotationMirror sub : mustNotBe) {
-            if (!ConstantUtils.areSameType(sub, cSlot.getValue())) {
-                resultList.add(-MathUtils.mapIdToMatrixEntry(vSlot.getId(), sub, lattice));
-            }
+    private void writeUnit(ConstantSlot constant, VariableSlot variable, boolean isType, ClauseArena arena) {
+        int type = getType(constant);
+        if (type >= 0) {
+            int var = MathUtils.mapIdToMatrixEntry(getId(variable), type, lattice);
+            arena.addLiteral(isType ? var : -var);
+            arena.endClause(false);
         }
-
-        VecInt[] result = new VecInt[resultList.size()];
-        if (resultList.size() > 0) {
-            Iterator<Integer> iterator = resultList.iterator();
-            for (int i = 0; i < result.length; i++) {
-                result[i] = VectorUtils.asVec(iterator.next().intValue());
-            }
-            return result;
-        }
-        return emptyClauses;
     }
 
     /**
-     * 
-     * @param type
-     * @param knownType
-     * @param unknownType
-     * @param maybeSet
-     * @return
+     * Serialize one constraint into clauses of its own, for the callers of the
+     * Serializer interface.
      */
-    private int[] getMaybe(AnnotationMirror type, VariableSlot knownType, VariableSlot unknownType,
-            Collection<AnnotationMirror> maybeSet) {
-        int[] maybeArray = new int[maybeSet.size() + 1];
-        int i = 1;
-        maybeArray[0] = -MathUtils.mapIdToMatrixEntry(knownType.getId(), type, lattice);
-        for (AnnotationMirror sup : maybeSet) {
-            maybeArray[i] = MathUtils.mapIdToMatrixEntry(unknownType.getId(), sup, lattice);
-            i++;
+    private VecInt[] toClauses(Constraint constraint) {
+        ClauseArena arena = new ClauseArena();
+        serialize(constraint, arena);
+        if (arena.size() == 0) {
+            return emptyClauses;
         }
-        return maybeArray;
+        VecInt[] result = new VecInt[arena.size()];
+        for (int clause = 0; clause < arena.size(); clause++) {
+            result[clause] = arena.toVec(clause, new VecInt());
+        }
+        return result;
     }
 
     @Override
-    public VecInt[] serialize(EqualityConstraint constraint) {
-        return new EqualityVariableCombos(emptyClauses).accept(constraint.getFirst(), constraint.getSecond(), constraint);
+    public VecInt[] serialize(SubtypeConstraint constraint) {
+        return toClauses(constraint);
     }
 
-    protected class EqualityVariableCombos extends VariableCombos<EqualityConstraint, VecInt[]> {
-        public EqualityVariableCombos(VecInt[] emptyValue) {
-            super(emptyValue);
-        }
-
-        @Override
-        protected VecInt[] constant_variable(ConstantSlot slot1, VariableSlot slot2, EqualityConstraint constraint) {
-            if (lattice.getAllTypes().contains(slot1.getValue())) {
-                return VectorUtils.asVecArray(MathUtils.mapIdToMatrixEntry(slot2.getId(), slot1.getValue(), lattice));
-            } else {
-                return emptyClauses;
-            }
-        }
-
-        @Override
-        protected VecInt[] variable_constant(VariableSlot slot1, ConstantSlot slot2, EqualityConstraint constraint) {
-            return constant_variable(slot2, slot1, constraint);
-        }
-
-        @Override
-        protected VecInt[] variable_variable(VariableSlot slot1, VariableSlot slot2, EqualityConstraint constraint) {
-            // a <=> b which is the same as (!a v b) & (!b v a)
-            VecInt[] result = new VecInt[lattice.numTypes * 2];
-            int i = 0;
-            for (AnnotationMirror type : lattice.getAllTypes()) {
-                if (lattice.getAllTypes().contains(type)) {
-                    result[i] = VectorUtils.asVec(
-                            -MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice),
-                            MathUtils.mapIdToMatrixEntry(slot2.getId(), type, lattice));
-                    result[i + 1] = VectorUtils.asVec(
-                            -MathUtils.mapIdToMatrixEntry(slot2.getId(), type, lattice),
-                            MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice));
-                    i = i + 2;
-                }
-            }
-            return result;
-        }
-
-        @Override
-        protected VecInt[] constant_constant(ConstantSlot slot1, ConstantSlot slot2, EqualityConstraint constraint) {
-//            if (!ConstantUtils.checkConstant(slot1, slot2, constraint)) {
-//                ErrorReporter.errorAbort("Confliction in equality constraint: " + slot1.getValue()
-//                        + " is not equal to " + slot2.getValue());
-//            }
-
-            return defaultAction(slot1, slot2, constraint);
-        }
+    @Override
+    public VecInt[] serialize(EqualityConstraint constraint) {
+        return toClauses(constraint);
     }
 
     @Override
     public VecInt[] serialize(InequalityConstraint constraint) {
-        return new InequalityVariableCombos(emptyClauses).accept(constraint.getFirst(), constraint.getSecond(), constraint);
+        return toClauses(constraint);
     }
 
-    protected class InequalityVariableCombos extends VariableCombos<InequalityConstraint, VecInt[]> {
-        public InequalityVariableCombos(VecInt[] emptyValue) {
-            super(emptyValue);
-        }
+    @Override
+    public VecInt[] serialize(ComparableConstraint constraint) {
+        return toClauses(constraint);
+    }
 
-        @Override
-        protected VecInt[] constant_variable(ConstantSlot slot1, VariableSlot slot2, InequalityConstraint constraint) {
-            if (lattice.getAllTypes().contains(slot1.getValue())) {
-                return VectorUtils.asVecArray(-MathUtils.mapIdToMatrixEntry(slot2.getId(),
-                        slot1.getValue(), lattice));
-            } else {
-                return emptyClauses;
+    /**
+     * The int representation of the type of a constant slot in the lattice,
+     * or -1 if the type is not in the lattice. It is looked up in the lattice
+     * once per constant slot.
+     *
+     * @param slot
+     * @return
+     */
+    protected int getType(ConstantSlot slot) {
+        Integer type = constantTypes.get(slot.getId());
+        if (type == null) {
+            type = lattice.typeToInt.get(slot.getValue());
+            if (type == null) {
+                type = -1;
             }
+            constantTypes.put(slot.getId(), type);
         }
+        return type;
+    }
 
-        @Override
-        protected VecInt[] variable_constant(VariableSlot slot1, ConstantSlot slot2, InequalityConstraint constraint) {
-            return constant_variable(slot2, slot1, constraint);
-        }
-
-        @Override
-        protected VecInt[] variable_variable(VariableSlot slot1, VariableSlot slot2, InequalityConstraint constraint) {
-            // a <=> !b which is the same as (!a v !b) & (b v a)
-            VecInt[] result = new VecInt[lattice.numTypes * 2];
-            int i = 0;
-            for (AnnotationMirror type : lattice.getAllTypes()) {
-                if (lattice.getAllTypes().contains(type)) {
-                    result[i] = VectorUtils.asVec(
-                            -MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice),
-                            -MathUtils.mapIdToMatrixEntry(slot2.getId(), type, lattice));
-                    result[i + 1] = VectorUtils.asVec(
-                            MathUtils.mapIdToMatrixEntry(slot2.getId(), type, lattice),
-                            MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice));
-                    i = i + 2;
-                }
+    /**
+     * Write the clauses of a template for the given slots into the arena. A
+     * literal k of the template, 1 <= |k| <= numTypes, is the type |k| - 1 of
+     * the first slot, and a literal numTypes < |k| <= 2 * numTypes is the type
+     * |k| - numTypes - 1 of the second slot, so the variable is the offset of
+     * its slot plus |k|.
+     *
+     * @param template
+     * @param firstId
+     * @param secondId
+     *            ignored if the template has no literal of a second slot
+     * @param arena
+     */
+    protected void write(int[][] template, int firstId, int secondId, ClauseArena arena) {
+        int numTypes = lattice.numTypes;
+        int firstOffset = (firstId - 1) * numTypes;
+        int secondOffset = (secondId - 2) * numTypes;
+        for (int i = 0; i < template.length; i++) {
+            int[] literals = template[i];
+            for (int j = 0; j < literals.length; j++) {
+                int literal = literals[j];
+                int magnitude = literal < 0 ? -literal : literal;
+                int var = (magnitude <= numTypes ? firstOffset : secondOffset) + magnitude;
+                arena.addLiteral(literal < 0 ? -var : var);
             }
-            return result;
+            arena.endClause(false);
         }
+    }
 
-        @Override
-        protected VecInt[] constant_constant(ConstantSlot slot1, ConstantSlot slot2, InequalityConstraint constraint) {
-//                if (!ConstantUtils.checkConstant(slot1, slot2, constraint)) {
-//                    ErrorReporter.errorAbort("Confliction in inequality constraint: " + slot1.getValue()
-//                            + " is equal to " + slot2.getValue());
-//                }
-
-            return defaultAction(slot1, slot2, constraint);
+    /**
+     * Templates of subtype constraints between a constant and a variable
+     * slot, for each type of the constant. For subtype constraint, if
+     * supertype is constant slot, then the subtype cannot be the super type
+     * of supertype, same for subtype.
+     */
+    private void buildConstantTemplates() {
+        int top = lattice.typeToInt.get(lattice.top);
+        int bottom = lattice.typeToInt.get(lattice.bottom);
+        for (int type = 0; type < lattice.numTypes; type++) {
+            if (type == top) {
+                subtypeConstantVariable[type] = new int[][] { { literal(top, false) } };
+            } else {
+                subtypeConstantVariable[type] = mustNotBe(type, lattice.subType);
+            }
+            if (type == bottom) {
+                subtypeVariableConstant[type] = new int[][] { { literal(bottom, false) } };
+            } else {
+                subtypeVariableConstant[type] = mustNotBe(type, lattice.superType);
+            }
         }
     }
 
-    @Override
-    public VecInt[] serialize(ComparableConstraint constraint) {
-        return new ComparableVariableCombos(emptyClauses).accept(constraint.getFirst(), constraint.getSecond(), constraint);
+    private int[][] mustNotBe(int type, Map<AnnotationMirror, Collection<AnnotationMirror>> related) {
+        AnnotationMirror value = lattice.intToType.get(type);
+        boolean[] excluded = new boolean[lattice.numTypes];
+        if (related.get(value) != null) {
+            markTypes(related.get(value), excluded);
+        }
+        if (lattice.incomparableType.containsKey(value)) {
+            markTypes(lattice.incomparableType.get(value), excluded);
+        }
+        excluded[type] = false;
+        List<int[]> clauses = new ArrayList<int[]>();
+        for (int other = 0; other < lattice.numTypes; other++) {
+            if (excluded[other]) {
+                clauses.add(new int[] { -literal(other, false) });
+            }
+        }
+        return clauses.toArray(new int[clauses.size()][]);
     }
 
-    protected class ComparableVariableCombos extends VariableCombos<ComparableConstraint, VecInt[]> {
-        public ComparableVariableCombos(VecInt[] emptyValue) {
-            super(emptyValue);
+    private void markTypes(Collection<AnnotationMirror> types, boolean[] marks) {
+        for (AnnotationMirror type : types) {
+            marks[lattice.typeToInt.get(type)] = true;
         }
+    }
 
-        @Override
-        protected VecInt[] variable_variable(VariableSlot slot1, VariableSlot slot2, ComparableConstraint constraint) {
-            // a <=> !b which is the same as (!a v !b) & (b v a)
-            List<VecInt> list = new ArrayList<VecInt>();
-            for (AnnotationMirror type : lattice.getAllTypes()) {
-                if (lattice.incomparableType.keySet().contains(type)) {
-                    for (AnnotationMirror notComparable : lattice.incomparableType.get(type)) {
-                        list.add(VectorUtils.asVec(
-                                -MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice),
-                                -MathUtils.mapIdToMatrixEntry(slot2.getId(), notComparable, lattice),
-                                MathUtils.mapIdToMatrixEntry(slot2.getId(), notComparable, lattice),
-                                MathUtils.mapIdToMatrixEntry(slot1.getId(), type, lattice)));
-                    }
+    /**
+     * Templates of subtype, equality, inequality and comparable constraints
+     * between two variable slots.
+     */
+    private void buildVariableTemplates() {
+        int top = lattice.typeToInt.get(lattice.top);
+        int bottom = lattice.typeToInt.get(lattice.bottom);
+        List<int[]> subtype = new ArrayList<int[]>();
+        List<int[]> equality = new ArrayList<int[]>();
+        List<int[]> inequality = new ArrayList<int[]>();
+        List<int[]> comparable = new ArrayList<int[]>();
+        for (int type = 0; type < lattice.numTypes; type++) {
+            AnnotationMirror value = lattice.intToType.get(type);
+            // if we know subtype
+            if (type != top) {
+                subtype.add(getMaybe(type, false, lattice.superType.get(value)));
+            }
+            // if we know supertype
+            if (type != bottom) {
+                subtype.add(getMaybe(type, true, lattice.subType.get(value)));
+            }
+            equality.add(new int[] { -literal(type, false), literal(type, true) });
+            equality.add(new int[] { -literal(type, true), literal(type, false) });
+            inequality.add(new int[] { -literal(type, false), -literal(type, true) });
+            inequality.add(new int[] { literal(type, true), literal(type, false) });
+            if (lattice.incomparableType.containsKey(value)) {
+                for (AnnotationMirror notComparable : lattice.incomparableType.get(value)) {
+                    int other = lattice.typeToInt.get(notComparable);
+                    comparable.add(new int[] { -literal(type, false), -literal(other, true),
+                            literal(other, true), literal(type, false) });
                 }
             }
-            VecInt[] result = list.toArray(new VecInt[list.size()]);
-            return result;
         }
+        // if subtype is top, then supertype is top.
+        // if supertype is bottom, then subtype is bottom.
+        subtype.add(new int[] { -literal(top, false), literal(top, true) });
+        subtype.add(new int[] { -literal(bottom, true), literal(bottom, false) });
+        subtypeVariableVariable = subtype.toArray(new int[subtype.size()][]);
+        equalityVariableVariable = equality.toArray(new int[equality.size()][]);
+        inequalityVariableVariable = inequality.toArray(new int[inequality.size()][]);
+        comparableVariableVariable = comparable.toArray(new int[comparable.size()][]);
+    }
 
-        @Override
-        protected VecInt[] constant_constant(ConstantSlot slot1, ConstantSlot slot2, ComparableConstraint constraint) {
-//                if (!ConstantUtils.checkConstant(slot1, slot2, constraint)) {
-//                    ErrorReporter.errorAbort("Confliction in comparable constraint: " + slot1.getValue()
-//                            + " is not comparable to " + slot2.getValue());
-//                }
-
-            return defaultAction(slot1, slot2, constraint);
+    /**
+     * If the known slot is the given type, the unknown slot is one of the
+     * types of maybeSet.
+     *
+     * @param type
+     * @param knownIsSecond
+     * @param maybeSet
+     * @return
+     */
+    private int[] getMaybe(int type, boolean knownIsSecond, Collection<AnnotationMirror> maybeSet) {
+        int[] maybeArray = new int[maybeSet.size() + 1];
+        int i = 1;
+        maybeArray[0] = -literal(type, knownIsSecond);
+        for (AnnotationMirror sup : maybeSet) {
+            maybeArray[i] = literal(lattice.typeToInt.get(sup), !knownIsSecond);
+            i++;
         }
+        return maybeArray;
     }
 
+    // positive template literal of the type of the first or second slot
+    private int literal(int type, boolean second) {
+        return second ? lattice.numTypes + type + 1 : type + 1;
+    }
 
     @Override
     public VecInt[] serialize(ExistentialConstraint constraint) {
@@ -366,19 +426,9 @@ public class MaxSatSerializer implements Serializer<VecInt[], VecInt[]> {
         return emptyClauses;
     }
 
-    // TODO: we should consider the situation that the type annotations with
-    // different weights.
     @Override
     public VecInt[] serialize(PreferenceConstraint preferenceConstraint) {
-        VariableSlot vs = preferenceConstraint.getVariable();
-        ConstantSlot cs = preferenceConstraint.getGoal();
-        if (lattice.getAllTypes().contains(cs.getValue())) {
-            return VectorUtils.asVecArray(MathUtils.mapIdToMatrixEntry(vs.getId(), cs.getValue(),
-                    lattice));
-        } else {
-            return emptyClauses;
-        }
-
+        return toClauses(preferenceConstraint);
     }
 
     protected static final VecInt[] emptyClauses = new VecInt[0];
@@ -0,0 +1,189 @@
+package maxsatbackend;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.sat4j.core.VecInt;
+
+import util.StatisticPrinter;
+import util.StatisticPrinter.ComponentStatisticKey;
+import util.StatisticPrinter.StatisticKey;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Serializer;
+import checkers.inference.model.Slot;
+import constraintsolver.BackEnd;
+import constraintsolver.Lattice;
+import constraintsolver.SlotAliases;
+
+/**
+ * Solves a component with sat4j in this process and with an external solver
+ * at the same time. The first engine that solves the component, or finds out
+ * that it is not solvable, wins and the other one is cancelled: sat4j through
+ * expireTimeout, the external solver by destroying its process. Each engine
+ * serializes the constraints itself, so neither waits for the other before
+ * it starts.
+ *
+ * @author jianchu
+ *
+ */
+public class PortfolioBackEnd extends BackEnd<VecInt[], VecInt[]> {
+
+    // the engines run on their own threads, not on the threads of the
+    // scheduler, so that a component of the portfolio takes one scheduler
+    // thread like any other component
+    private static final ExecutorService engines = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "portfolio-engine");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final MaxSatBackEnd sat4j;
+    private final ExternalBackEnd external;
+
+    public PortfolioBackEnd(Map<String, String> configuration, Collection<Slot> slots,
+            Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment, Serializer<VecInt[], VecInt[]> realSerializer,
+            Lattice lattice) {
+        super(configuration, slots, constraints, qualHierarchy, processingEnvironment, realSerializer,
+                lattice);
+        this.sat4j = new MaxSatBackEnd(configuration, slots, constraints, qualHierarchy,
+                processingEnvironment, realSerializer, lattice);
+        this.external = new ExternalBackEnd(configuration, slots, constraints, qualHierarchy,
+                processingEnvironment, realSerializer, lattice);
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        CompletionService<Answer> race = new ExecutorCompletionService<Answer>(engines);
+        race.submit(new Answer(sat4j));
+        race.submit(new Answer(external));
+        Map<Integer, AnnotationMirror> result = Collections.emptyMap();
+        Answer winner = null;
+        try {
+            for (int finished = 0; finished < 2; finished++) {
+                Answer answer = race.take().get();
+                if (winner != null) {
+                    // the loser only tells by how much it lost if it answered
+                    // before it noticed the cancellation
+                    if (answer.isAnswer()) {
+                        componentStatistic.put(ComponentStatisticKey.PORTFOLIO_MARGIN_TIME,
+                                answer.end - winner.end);
+                    }
+                } else if (answer.isAnswer()) {
+                    winner = answer;
+                    result = answer.result;
+                    this.outcome = answer.outcome;
+                    (answer.engine == sat4j ? external : sat4j).cancel();
+                } else {
+                    // the engine failed, the other one may still answer
+                    this.outcome = answer.outcome;
+                }
+            }
+        } catch (InterruptedException e) {
+            sat4j.cancel();
+            external.cancel();
+            this.outcome = Outcome.ERROR;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Answer catches everything the engines throw
+            e.printStackTrace();
+            this.outcome = Outcome.ERROR;
+        }
+        if (winner != null) {
+            componentStatistic.putAll(winner.engine.getComponentStatistic());
+            componentStatistic.put(ComponentStatisticKey.PORTFOLIO_WINNER,
+                    winner.engine.getClass().getSimpleName());
+            if (winner.engine == external) {
+                StatisticPrinter.record(StatisticKey.PORTFOLIO_EXTERNAL_WINS_SIZE, (long) 1);
+            }
+        }
+        // saving memory of JVM...
+        this.constraints = null;
+        return result;
+    }
+
+    /**
+     * Solves the component with one engine and keeps how and when it ended.
+     */
+    private static class Answer implements Callable<Answer> {
+
+        private final BackEnd<?, ?> engine;
+        private Map<Integer, AnnotationMirror> result = Collections.emptyMap();
+        private Outcome outcome;
+        private long end;
+
+        private Answer(BackEnd<?, ?> engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public Answer call() {
+            try {
+                result = engine.solve();
+                outcome = engine.getOutcome();
+            } catch (Throwable e) {
+                e.printStackTrace();
+                outcome = Outcome.ERROR;
+            }
+            end = System.currentTimeMillis();
+            return this;
+        }
+
+        /**
+         * @return true if the engine solved the component or found out that
+         *         it is not solvable.
+         */
+        private boolean isAnswer() {
+            return outcome == Outcome.SOLVED || outcome == Outcome.UNSOLVABLE;
+        }
+    }
+
+    @Override
+    public void convertAll() {
+        // each engine serializes the constraints itself
+    }
+
+    @Override
+    public void setSlotAliases(SlotAliases slotAliases) {
+        super.setSlotAliases(slotAliases);
+        sat4j.setSlotAliases(slotAliases);
+        external.setSlotAliases(slotAliases);
+    }
+
+    @Override
+    public void setSerializationThreads(int serializationThreads) {
+        super.setSerializationThreads(serializationThreads);
+        sat4j.setSerializationThreads(serializationThreads);
+        external.setSerializationThreads(serializationThreads);
+    }
+
+    @Override
+    public void setTimeout(long timeoutMs) {
+        super.setTimeout(timeoutMs);
+        sat4j.setTimeout(timeoutMs);
+        external.setTimeout(timeoutMs);
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        sat4j.cancel();
+        external.cancel();
+    }
+}
@@ -0,0 +1,77 @@
+package maxsatbackend;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the processes of external solvers for all back ends. At most one
+ * process per permit runs at once, however many components are solved in
+ * parallel, and the threads that read the output of the processes are kept
+ * and reused for the next processes.
+ *
+ * @author jianchu
+ *
+ */
+public class ProcessPool {
+
+    private static ProcessPool instance;
+
+    private final Semaphore permits;
+    private final ExecutorService readers;
+
+    private ProcessPool(int size) {
+        this.permits = new Semaphore(size, true);
+        this.readers = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "external-solver-reader");
+                // do not keep the JVM alive for idle readers
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param size
+     *            the number of processes that may run at once, only the size
+     *            given by the first call is used
+     * @return the process pool that is shared by all back ends.
+     */
+    public static synchronized ProcessPool getInstance(int size) {
+        if (instance == null) {
+            instance = new ProcessPool(size);
+        }
+        return instance;
+    }
+
+    /**
+     * Wait for a permit to run a process.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if no permit is available within the timeout.
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return permits.tryAcquire(timeout, unit);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Read an output stream of a process on a pooled thread.
+     *
+     * @param reader
+     * @return
+     */
+    public <T> Future<T> read(Callable<T> reader) {
+        return readers.submit(reader);
+    }
+}
@@ -0,0 +1,199 @@
+package maxsatbackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reads the s, o and v lines of the output of a SAT or MaxSat solver byte by
+ * byte, straight from the stream of the process. The literals of the v lines
+ * are parsed into an int array without creating a String or an Integer per
+ * literal. A v line either has literals, or one string of 0 and 1 with the
+ * value of each variable, as in the recent MaxSat evaluations.
+ *
+ * @author jianchu
+ *
+ */
+public class SolverOutputParser {
+
+    private static final int START = 0;
+    private static final int SKIP = 1;
+    private static final int STATUS = 2;
+    private static final int COST = 3;
+    private static final int VALUES = 4;
+
+    // the variables of the input, the solver may report any value for the
+    // others
+    private final BitSet variables;
+    private final int numberOfVars;
+    private final byte[] buffer = new byte[1 << 16];
+
+    private int state = START;
+    private int[] model;
+    private int size = 0;
+    private final byte[] statusBytes = new byte[64];
+    private int statusLength = 0;
+    private String status;
+    private long cost = -1;
+    private long lineCost;
+
+    // the token of a v line that is parsed
+    private boolean inToken = false;
+    private boolean firstToken;
+    private boolean negative;
+    private boolean onlyBits;
+    private boolean overflow;
+    private int value;
+    private int tokenLength;
+    // size of the model before the token, the values of the token as a 0/1
+    // string are added speculatively and dropped if it is a literal
+    private int mark;
+
+    /**
+     * @param variables
+     *            the variables of the input
+     * @param numberOfVars
+     *            the number of variables in the header of the input
+     */
+    public SolverOutputParser(BitSet variables, int numberOfVars) {
+        this.variables = variables;
+        this.numberOfVars = numberOfVars;
+        this.model = new int[Math.max(variables.cardinality(), 16)];
+    }
+
+    public void parse(InputStream in) throws IOException {
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            for (int i = 0; i < length; i++) {
+                accept(buffer[i]);
+            }
+        }
+        endLine();
+    }
+
+    private void accept(byte b) {
+        if (b == '\n') {
+            endLine();
+            return;
+        }
+        switch (state) {
+        case START:
+            state = b == 'v' ? VALUES : b == 's' ? STATUS : b == 'o' ? COST : SKIP;
+            firstToken = true;
+            statusLength = 0;
+            lineCost = -1;
+            break;
+        case VALUES:
+            acceptValue(b);
+            break;
+        case STATUS:
+            if (statusLength < statusBytes.length) {
+                statusBytes[statusLength++] = b;
+            }
+            break;
+        case COST:
+            if (b >= '0' && b <= '9') {
+                lineCost = (lineCost < 0 ? 0 : lineCost * 10) + (b - '0');
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void acceptValue(byte b) {
+        if (b == ' ' || b == '\t' || b == '\r') {
+            endToken();
+            return;
+        }
+        if (!inToken) {
+            inToken = true;
+            negative = false;
+            onlyBits = firstToken;
+            overflow = false;
+            value = 0;
+            tokenLength = 0;
+            mark = size;
+        }
+        if (b == '-' && tokenLength == 0 && !negative) {
+            negative = true;
+            onlyBits = false;
+            return;
+        }
+        if (b < '0' || b > '9') {
+            // not a number, e.g. a word of the solver
+            overflow = true;
+            onlyBits = false;
+            return;
+        }
+        tokenLength++;
+        if (value > (Integer.MAX_VALUE - 9) / 10) {
+            overflow = true;
+        } else {
+            value = value * 10 + (b - '0');
+        }
+        if (onlyBits && b <= '1') {
+            if (variables.get(tokenLength)) {
+                add(b == '1' ? tokenLength : -tokenLength);
+            }
+        } else {
+            onlyBits = false;
+        }
+    }
+
+    private void endToken() {
+        if (!inToken) {
+            return;
+        }
+        inToken = false;
+        boolean isBits = onlyBits && tokenLength > 1 && tokenLength == numberOfVars;
+        if (!isBits) {
+            size = mark;
+            if (!overflow && value != 0 && variables.get(value)) {
+                add(negative ? -value : value);
+            }
+        }
+        firstToken = false;
+    }
+
+    private void endLine() {
+        if (state == VALUES) {
+            endToken();
+        } else if (state == STATUS) {
+            status = new String(statusBytes, 0, statusLength, StandardCharsets.US_ASCII).trim();
+        } else if (state == COST && lineCost >= 0) {
+            cost = lineCost;
+        }
+        state = START;
+    }
+
+    private void add(int literal) {
+        if (size == model.length) {
+            model = Arrays.copyOf(model, model.length * 2);
+        }
+        model[size++] = literal;
+    }
+
+    /**
+     * @return the literals of the variables of the input.
+     */
+    public int[] getModel() {
+        return size == model.length ? model : Arrays.copyOf(model, size);
+    }
+
+    /**
+     * @return the text of the last s line, or null if there is none.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the cost of the last o line, or -1 if there is none.
+     */
+    public long getCost() {
+        return cost;
+    }
+}
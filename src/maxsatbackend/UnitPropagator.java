@@ -0,0 +1,317 @@
+package maxsatbackend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sat4j.core.VecInt;
+
+/**
+ * Unit propagation over the hard clauses and the exactly-one constraints of a
+ * back end, before they are given to the SAT solver. The literals that are
+ * forced are fixed, satisfied clauses are removed and false literals are
+ * removed from the remaining clauses, so only the residual formula has to be
+ * solved. If nothing is left, the fixed literals are the solution.
+ *
+ * @author jianchu
+ *
+ */
+public class UnitPropagator {
+
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+
+    private final int numberOfVars;
+    // var -> TRUE, FALSE or 0 if it is not fixed
+    private final byte[] values;
+    // fixed literals in the order they are fixed
+    private final int[] trail;
+    private int trailSize = 0;
+    private boolean conflict = false;
+
+    // clauses and exactly-one constraints that contain each literal, see index
+    private int[] clauseOffsets;
+    private int[] clauseOccurrences;
+    private int[] groupOffsets;
+    private int[] groupOccurrences;
+    // number of false literals of each hard clause
+    private int[] falseLiterals;
+    private boolean[] satisfied;
+    // number of true and false literals of each exactly-one constraint
+    private int[] groupTrueLiterals;
+    private int[] groupFalseLiterals;
+
+    private ClauseArena residualClauses;
+    private final List<VecInt> residualExactlyOne = new ArrayList<VecInt>();
+
+    /**
+     * @param numberOfVars
+     *            the largest variable of the clauses
+     */
+    public UnitPropagator(int numberOfVars) {
+        this.numberOfVars = numberOfVars;
+        this.values = new byte[numberOfVars + 1];
+        this.trail = new int[numberOfVars];
+    }
+
+    /**
+     * Fix the literals that are forced by the hard clauses and the exactly-one
+     * constraints, and build the residual formula.
+     *
+     * @param clauses
+     * @param exactlyOne
+     * @return false if the hard clauses and exactly-one constraints are
+     *         unsatisfiable.
+     */
+    public boolean propagate(ClauseArena clauses, List<VecInt> exactlyOne) {
+        indexClauses(clauses);
+        indexGroups(exactlyOne);
+        for (int clause = 0; clause < clauses.size() && !conflict; clause++) {
+            if (!clauses.isSoft(clause) && clauses.getEnd(clause) - clauses.getStart(clause) == 1) {
+                assign(clauses.getLiteral(clauses.getStart(clause)));
+            }
+        }
+        for (int group = 0; group < exactlyOne.size() && !conflict; group++) {
+            if (exactlyOne.get(group).size() == 1) {
+                assign(exactlyOne.get(group).get(0));
+            } else if (exactlyOne.get(group).isEmpty()) {
+                conflict = true;
+            }
+        }
+        for (int next = 0; next < trailSize && !conflict; next++) {
+            propagate(trail[next], clauses, exactlyOne);
+        }
+        if (conflict) {
+            return false;
+        }
+        buildResidual(clauses, exactlyOne);
+        // saving memory of JVM...
+        this.clauseOccurrences = null;
+        this.groupOccurrences = null;
+        this.falseLiterals = null;
+        this.satisfied = null;
+        return true;
+    }
+
+    private static int index(int literal) {
+        return literal > 0 ? literal << 1 : (-literal << 1) + 1;
+    }
+
+    private void indexClauses(ClauseArena clauses) {
+        clauseOffsets = new int[2 * numberOfVars + 3];
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            if (clauses.isSoft(clause)) {
+                continue;
+            }
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                clauseOffsets[index(clauses.getLiteral(i)) + 1]++;
+            }
+        }
+        for (int i = 1; i < clauseOffsets.length; i++) {
+            clauseOffsets[i] += clauseOffsets[i - 1];
+        }
+        clauseOccurrences = new int[clauseOffsets[clauseOffsets.length - 1]];
+        int[] next = clauseOffsets.clone();
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            if (clauses.isSoft(clause)) {
+                continue;
+            }
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                clauseOccurrences[next[index(clauses.getLiteral(i))]++] = clause;
+            }
+        }
+        falseLiterals = new int[clauses.size()];
+        satisfied = new boolean[clauses.size()];
+    }
+
+    private void indexGroups(List<VecInt> exactlyOne) {
+        groupOffsets = new int[2 * numberOfVars + 3];
+        for (VecInt group : exactlyOne) {
+            for (int i = 0; i < group.size(); i++) {
+                groupOffsets[index(group.get(i)) + 1]++;
+            }
+        }
+        for (int i = 1; i < groupOffsets.length; i++) {
+            groupOffsets[i] += groupOffsets[i - 1];
+        }
+        groupOccurrences = new int[groupOffsets[groupOffsets.length - 1]];
+        int[] next = groupOffsets.clone();
+        for (int g = 0; g < exactlyOne.size(); g++) {
+            VecInt group = exactlyOne.get(g);
+            for (int i = 0; i < group.size(); i++) {
+                groupOccurrences[next[index(group.get(i))]++] = g;
+            }
+        }
+        groupTrueLiterals = new int[exactlyOne.size()];
+        groupFalseLiterals = new int[exactlyOne.size()];
+    }
+
+    private void assign(int literal) {
+        int var = Math.abs(literal);
+        byte value = literal > 0 ? TRUE : FALSE;
+        if (values[var] == 0) {
+            values[var] = value;
+            trail[trailSize++] = literal;
+        } else if (values[var] != value) {
+            conflict = true;
+        }
+    }
+
+    private boolean isTrue(int literal) {
+        return values[Math.abs(literal)] == (literal > 0 ? TRUE : FALSE);
+    }
+
+    private boolean isFalse(int literal) {
+        return values[Math.abs(literal)] == (literal > 0 ? FALSE : TRUE);
+    }
+
+    /**
+     * Update the clauses and exactly-one constraints of a literal that has
+     * become true, and fix the literals they force.
+     */
+    private void propagate(int literal, ClauseArena clauses, List<VecInt> exactlyOne) {
+        int positive = index(literal);
+        int negative = index(-literal);
+        for (int i = clauseOffsets[positive]; i < clauseOffsets[positive + 1]; i++) {
+            satisfied[clauseOccurrences[i]] = true;
+        }
+        for (int i = clauseOffsets[negative]; i < clauseOffsets[negative + 1] && !conflict; i++) {
+            int clause = clauseOccurrences[i];
+            if (satisfied[clause]) {
+                continue;
+            }
+            int length = clauses.getEnd(clause) - clauses.getStart(clause);
+            falseLiterals[clause]++;
+            if (falseLiterals[clause] == length) {
+                conflict = true;
+            } else if (falseLiterals[clause] == length - 1) {
+                for (int j = clauses.getStart(clause); j < clauses.getEnd(clause); j++) {
+                    if (!isFalse(clauses.getLiteral(j))) {
+                        assign(clauses.getLiteral(j));
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i = groupOffsets[positive]; i < groupOffsets[positive + 1] && !conflict; i++) {
+            int g = groupOccurrences[i];
+            if (++groupTrueLiterals[g] > 1) {
+                conflict = true;
+                break;
+            }
+            VecInt group = exactlyOne.get(g);
+            for (int j = 0; j < group.size(); j++) {
+                if (group.get(j) != literal) {
+                    assign(-group.get(j));
+                }
+            }
+        }
+        for (int i = groupOffsets[negative]; i < groupOffsets[negative + 1] && !conflict; i++) {
+            int g = groupOccurrences[i];
+            VecInt group = exactlyOne.get(g);
+            groupFalseLiterals[g]++;
+            if (groupFalseLiterals[g] == group.size()) {
+                conflict = true;
+            } else if (groupFalseLiterals[g] == group.size() - 1 && groupTrueLiterals[g] == 0) {
+                for (int j = 0; j < group.size(); j++) {
+                    if (!isFalse(group.get(j))) {
+                        assign(group.get(j));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep the clauses and exactly-one constraints that are not satisfied yet,
+     * without their false literals. Soft clauses of which all literals are
+     * false are removed too, as no assignment can satisfy them any more.
+     */
+    private void buildResidual(ClauseArena clauses, List<VecInt> exactlyOne) {
+        residualClauses = new ClauseArena();
+        for (int clause = 0; clause < clauses.size(); clause++) {
+            int unassigned = 0;
+            boolean isSatisfied = false;
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                int literal = clauses.getLiteral(i);
+                if (isTrue(literal)) {
+                    isSatisfied = true;
+                    break;
+                } else if (!isFalse(literal)) {
+                    unassigned++;
+                }
+            }
+            if (isSatisfied || unassigned == 0) {
+                continue;
+            }
+            for (int i = clauses.getStart(clause); i < clauses.getEnd(clause); i++) {
+                int literal = clauses.getLiteral(i);
+                if (!isFalse(literal)) {
+                    residualClauses.addLiteral(literal);
+                }
+            }
+            residualClauses.endClause(clauses.isSoft(clause));
+        }
+        for (int g = 0; g < exactlyOne.size(); g++) {
+            if (groupTrueLiterals[g] > 0) {
+                continue;
+            }
+            VecInt group = exactlyOne.get(g);
+            VecInt residual = new VecInt(group.size() - groupFalseLiterals[g]);
+            for (int j = 0; j < group.size(); j++) {
+                if (!isFalse(group.get(j))) {
+                    residual.push(group.get(j));
+                }
+            }
+            residualExactlyOne.add(residual);
+        }
+    }
+
+    public ClauseArena getResidualClauses() {
+        return residualClauses;
+    }
+
+    public List<VecInt> getResidualExactlyOne() {
+        return residualExactlyOne;
+    }
+
+    /**
+     * @return true if the fixed literals satisfy all hard clauses and
+     *         exactly-one constraints, and decide all soft clauses.
+     */
+    public boolean isSolved() {
+        return residualClauses.size() == 0 && residualExactlyOne.isEmpty();
+    }
+
+    /**
+     * @return the number of fixed variables.
+     */
+    public int getNumberOfFixedVars() {
+        return trailSize;
+    }
+
+    /**
+     * Combine a model of the residual formula with the fixed literals.
+     *
+     * @param model
+     *            the model of the residual formula, may be empty
+     * @return
+     */
+    public int[] getModel(int[] model) {
+        int[] result = new int[model.length + trailSize];
+        int size = 0;
+        for (int literal : model) {
+            // variables above numberOfVars are not fixed, e.g. selectors of
+            // soft clauses
+            int var = Math.abs(literal);
+            if (var > numberOfVars || values[var] == 0) {
+                result[size++] = literal;
+            }
+        }
+        for (int i = 0; i < trailSize; i++) {
+            result[size++] = trail[i];
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
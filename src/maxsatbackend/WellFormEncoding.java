@@ -0,0 +1,19 @@
+package maxsatbackend;
+
+/**
+ * Encodings of the constraint that exactly one type variable of a slot is
+ * true, selected by the solver argument "wellFormEncoding".
+ *
+ * @author jianchu
+ *
+ */
+public enum WellFormEncoding {
+    // at least one clause and one clause per pair of types
+    PAIRWISE,
+    // at least one clause and a sequential counter
+    SEQUENTIAL,
+    // at least one clause and the commander encoding
+    COMMANDER,
+    // a cardinality constraint of sat4j, no clause at all
+    NATIVE;
+}
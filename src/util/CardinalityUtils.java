@@ -0,0 +1,87 @@
+package util;
+
+import java.util.List;
+
+import org.sat4j.core.VecInt;
+
+/**
+ * Clause encodings of at-most-one constraints over literals. The encodings
+ * that need auxiliary variables number them from nextVar, and return the
+ * next free variable.
+ *
+ * @author jianchu
+ *
+ */
+public class CardinalityUtils {
+
+    private static final int COMMANDER_GROUP_SIZE = 3;
+
+    /**
+     * One binary clause for each pair of literals, k * (k - 1) / 2 clauses and
+     * no auxiliary variable.
+     */
+    public static void atMostOnePairwise(int[] literals, List<VecInt> clauses) {
+        for (int i = 0; i < literals.length; i++) {
+            for (int j = i + 1; j < literals.length; j++) {
+                clauses.add(VectorUtils.asVec(-literals[i], -literals[j]));
+            }
+        }
+    }
+
+    /**
+     * Sequential counter encoding (Sinz 2005). Auxiliary variable s_i is true
+     * if one of the first i + 1 literals is true. 3 * k - 4 clauses and k - 1
+     * auxiliary variables.
+     *
+     * @return the next free variable
+     */
+    public static int atMostOneSequential(int[] literals, List<VecInt> clauses, int nextVar) {
+        int k = literals.length;
+        if (k <= 1) {
+            return nextVar;
+        }
+        int s = nextVar;
+        clauses.add(VectorUtils.asVec(-literals[0], s));
+        for (int i = 1; i < k - 1; i++) {
+            clauses.add(VectorUtils.asVec(-literals[i], s + i));
+            clauses.add(VectorUtils.asVec(-(s + i - 1), s + i));
+            clauses.add(VectorUtils.asVec(-literals[i], -(s + i - 1)));
+        }
+        clauses.add(VectorUtils.asVec(-literals[k - 1], -(s + k - 2)));
+        return nextVar + k - 1;
+    }
+
+    /**
+     * Commander encoding (Klieber and Kwon 2007). Literals are split into
+     * groups of three, each group has at most one true literal and a commander
+     * variable that is true iff a literal of the group is true, and at most
+     * one commander is true, recursively.
+     *
+     * @return the next free variable
+     */
+    public static int atMostOneCommander(int[] literals, List<VecInt> clauses, int nextVar) {
+        if (literals.length <= COMMANDER_GROUP_SIZE + 1) {
+            atMostOnePairwise(literals, clauses);
+            return nextVar;
+        }
+        int[] commanders = new int[(literals.length + COMMANDER_GROUP_SIZE - 1) / COMMANDER_GROUP_SIZE];
+        for (int g = 0; g < commanders.length; g++) {
+            int from = g * COMMANDER_GROUP_SIZE;
+            int to = Math.min(from + COMMANDER_GROUP_SIZE, literals.length);
+            int[] group = new int[to - from];
+            System.arraycopy(literals, from, group, 0, group.length);
+            int commander = nextVar++;
+            commanders[g] = commander;
+
+            atMostOnePairwise(group, clauses);
+            int[] commanderImpliesGroup = new int[group.length + 1];
+            commanderImpliesGroup[0] = -commander;
+            for (int i = 0; i < group.length; i++) {
+                clauses.add(VectorUtils.asVec(-group[i], commander));
+                commanderImpliesGroup[i + 1] = group[i];
+            }
+            clauses.add(VectorUtils.asVec(commanderImpliesGroup));
+        }
+        return atMostOneCommander(commanders, clauses, nextVar);
+    }
+}
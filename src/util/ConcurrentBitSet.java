@@ -0,0 +1,75 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size bit set that several threads can set bits of at once, without
+ * locking.
+ *
+ * @author jianchu
+ *
+ */
+public class ConcurrentBitSet {
+
+    private final AtomicLongArray words;
+    private final int size;
+
+    /**
+     * @param size
+     *            the bits are from 0 (inclusive) to size (exclusive)
+     */
+    public ConcurrentBitSet(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public void set(int bit) {
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        long old;
+        do {
+            old = words.get(word);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(word, old, old | mask));
+    }
+
+    public boolean get(int bit) {
+        return (words.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return the first set bit from the given bit (inclusive), or -1 if
+     *         there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from >= size) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = words.get(word) & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return bit < size ? bit : -1;
+            }
+            if (++word == words.length()) {
+                return -1;
+            }
+            bits = words.get(word);
+        }
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < words.length(); i++) {
+            cardinality += Long.bitCount(words.get(i));
+        }
+        return cardinality;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 
 import javax.lang.model.element.AnnotationMirror;
 
+import util.StatisticPrinter.ComponentStatisticKey;
 import util.StatisticPrinter.StatisticKey;
 import checkers.inference.InferenceMain;
 
@@ -66,6 +67,39 @@ public class PrintUtils {
         }
     }
 
+    /**
+     * write the per component statistic as a csv file, one row per component.
+     *
+     * @param componentStatistic
+     */
+    public static void writeComponentStatistic(Map<Integer, Map<ComponentStatisticKey, Object>> componentStatistic) {
+        if (componentStatistic.isEmpty()) {
+            return;
+        }
+        String writePath = new File(new File("").getAbsolutePath()).toString() + File.separator
+                + "solver-component-statistic.txt";
+        StringBuilder sb = new StringBuilder("component");
+        for (ComponentStatisticKey key : ComponentStatisticKey.values()) {
+            sb.append("," + key.toString().toLowerCase());
+        }
+        sb.append("\n");
+        for (Map.Entry<Integer, Map<ComponentStatisticKey, Object>> entry : componentStatistic.entrySet()) {
+            sb.append(entry.getKey());
+            for (ComponentStatisticKey key : ComponentStatisticKey.values()) {
+                Object value = entry.getValue().get(key);
+                sb.append("," + (value == null ? "" : value));
+            }
+            sb.append("\n");
+        }
+        try {
+            PrintWriter pw = new PrintWriter(writePath);
+            pw.write(sb.toString());
+            pw.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     public static void writeResult(Map<Integer, AnnotationMirror> result) {
         StringBuilder printResult = new StringBuilder();
         final int maxLength = String.valueOf(InferenceMain.getInstance().getSlotManager().getNumberOfSlots())
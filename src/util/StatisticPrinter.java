@@ -1,7 +1,9 @@
 package util;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class StatisticPrinter {
 
@@ -10,8 +12,32 @@ public class StatisticPrinter {
         CONSTRAINT_SIZE,
         CNF_VARIABLE_SIZE,
         CNF_CLAUSES_SIZE,
+        WELL_FORM_CLAUSES_SIZE,
+        WELL_FORM_AUXILIARY_VARIABLE_SIZE,
+        WELL_FORM_CARDINALITY_SIZE,
+        CLAUSES_BEFORE_SIMPLIFICATION_SIZE,
+        CLAUSES_AFTER_SIMPLIFICATION_SIZE,
+        DUPLICATE_CLAUSES_SIZE,
+        SUBSUMED_CLAUSES_SIZE,
+        TAUTOLOGY_CLAUSES_SIZE,
+        PROPAGATION_FIXED_VARIABLE_SIZE,
+        PROPAGATION_ELIMINATED_CLAUSES_SIZE,
+        PROPAGATION_SOLVED_COMPONENTS_SIZE,
         LOGIQL_PREDICATES_SIZE,
         LOGIQL_DATA_SIZE,
+        COLLAPSED_SLOTS_SIZE,
+        CYCLE_COLLAPSED_SLOTS_SIZE,
+        COLLAPSED_CONSTRAINTS_SIZE,
+        COLLAPSED_CLAUSES_SIZE,
+        ENUMERATION_COMPONENTS_SIZE,
+        BACK_END_COMPONENTS_SIZE,
+        PURE_SAT_COMPONENTS_SIZE,
+        UNSOLVABLE_COMPONENTS_SIZE,
+        TIMEOUT_COMPONENTS_SIZE,
+        CANCELLED_COMPONENTS_SIZE,
+        ERROR_COMPONENTS_SIZE,
+        PORTFOLIO_COMPONENTS_SIZE,
+        PORTFOLIO_EXTERNAL_WINS_SIZE,
         
         CONSTRAINT_GENERATION_TIME,
         GRAPH_GENERATION_TIME,
@@ -22,8 +48,11 @@ public class StatisticPrinter {
         SAT_SOLVING_GRAPH_PARALLEL_TIME,
         SAT_SOLVING_GRAPH_SEQUENTIAL_TIME,
         SAT_SOLVING_WITHOUT_GRAPH_TIME,
+        SAT_SOLVING_PURE_SAT_TIME,
         SAT_SOLVING_WITHOUT_GRAPH_TIME_LL,
         SAT_SOLVING_GRAPH_SEQUENTIAL_TIME_LL,
+        SAT_SOLVING_GRAPH_PARALLEL_TIME_LL,
+        SAT_SOLVING_EXTERNAL_TIME,
         
         LOGIQL_SERIALIZATION_TIME,
         LOGIQL_SOLVING_GRAPH_SEQUENTIAL_TIME,
@@ -32,15 +61,54 @@ public class StatisticPrinter {
         SAT_SOLVING_MEMORY,
         LOGIQL_SOLVING_MEMORY;
     } 
+
+    public enum ComponentStatisticKey {
+        CONSTRAINT_SIZE,
+        BACK_END,
+        FIXED_VARIABLE_SIZE,
+        ELIMINATED_CLAUSES_SIZE,
+        COST,
+        QUEUE_WAIT_TIME,
+        SOLVING_TIME,
+        TIMEOUT,
+        OUTCOME,
+        PORTFOLIO_WINNER,
+        PORTFOLIO_MARGIN_TIME;
+    }
     
+
     private final static Map<StatisticKey, Long> statistic = new HashMap<StatisticKey, Long>();
     static {
         statistic.put(StatisticKey.SLOTS_SIZE, (long) 0);
         statistic.put(StatisticKey.CONSTRAINT_SIZE, (long) 0);
         statistic.put(StatisticKey.CNF_VARIABLE_SIZE, (long) 0);
         statistic.put(StatisticKey.CNF_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.WELL_FORM_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.WELL_FORM_AUXILIARY_VARIABLE_SIZE, (long) 0);
+        statistic.put(StatisticKey.WELL_FORM_CARDINALITY_SIZE, (long) 0);
+        statistic.put(StatisticKey.CLAUSES_BEFORE_SIMPLIFICATION_SIZE, (long) 0);
+        statistic.put(StatisticKey.CLAUSES_AFTER_SIMPLIFICATION_SIZE, (long) 0);
+        statistic.put(StatisticKey.DUPLICATE_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.SUBSUMED_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.TAUTOLOGY_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.PROPAGATION_FIXED_VARIABLE_SIZE, (long) 0);
+        statistic.put(StatisticKey.PROPAGATION_ELIMINATED_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.PROPAGATION_SOLVED_COMPONENTS_SIZE, (long) 0);
         statistic.put(StatisticKey.LOGIQL_PREDICATES_SIZE, (long) 0);
         statistic.put(StatisticKey.LOGIQL_DATA_SIZE, (long) 0);
+        statistic.put(StatisticKey.COLLAPSED_SLOTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.CYCLE_COLLAPSED_SLOTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.COLLAPSED_CONSTRAINTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.COLLAPSED_CLAUSES_SIZE, (long) 0);
+        statistic.put(StatisticKey.ENUMERATION_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.BACK_END_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.PURE_SAT_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.UNSOLVABLE_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.TIMEOUT_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.CANCELLED_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.ERROR_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.PORTFOLIO_COMPONENTS_SIZE, (long) 0);
+        statistic.put(StatisticKey.PORTFOLIO_EXTERNAL_WINS_SIZE, (long) 0);
         statistic.put(StatisticKey.CONSTRAINT_GENERATION_TIME, (long) 0);
         statistic.put(StatisticKey.GRAPH_GENERATION_TIME, (long) 0);
         statistic.put(StatisticKey.JAVAC_INFERENCE_TIME, (long) 0);
@@ -49,6 +117,7 @@ public class StatisticPrinter {
         statistic.put(StatisticKey.SAT_SOLVING_GRAPH_PARALLEL_TIME, (long) 0);
         statistic.put(StatisticKey.SAT_SOLVING_GRAPH_SEQUENTIAL_TIME, (long) 0);
         statistic.put(StatisticKey.SAT_SOLVING_WITHOUT_GRAPH_TIME, (long) 0);
+        statistic.put(StatisticKey.SAT_SOLVING_PURE_SAT_TIME, (long) 0);
         statistic.put(StatisticKey.LOGIQL_SERIALIZATION_TIME, (long) 0);
         statistic.put(StatisticKey.LOGIQL_SOLVING_GRAPH_SEQUENTIAL_TIME, (long) 0);
         statistic.put(StatisticKey.LOGIQL_SOLVING_WITHOUT_GRAPH_TIME, (long) 0);
@@ -56,13 +125,18 @@ public class StatisticPrinter {
         statistic.put(StatisticKey.LOGIQL_SOLVING_MEMORY, (long) 0);
         statistic.put(StatisticKey.SAT_SOLVING_WITHOUT_GRAPH_TIME_LL, (long) 0);
         statistic.put(StatisticKey.SAT_SOLVING_GRAPH_SEQUENTIAL_TIME_LL, (long) 0);
+        statistic.put(StatisticKey.SAT_SOLVING_GRAPH_PARALLEL_TIME_LL, (long) 0);
+        statistic.put(StatisticKey.SAT_SOLVING_EXTERNAL_TIME, (long) 0);
     }
 
+    private final static Map<Integer, Map<ComponentStatisticKey, Object>> componentStatistic = new TreeMap<>();
+
     public static void record(StatisticKey key, Long value) {
         synchronized (statistic) {
             if (key.equals(StatisticKey.LOGIQL_PREDICATES_SIZE)) {
                 statistic.put(key, value);
             } else if (key.equals(StatisticKey.SAT_SOLVING_GRAPH_PARALLEL_TIME)
+                    || key.equals(StatisticKey.SAT_SOLVING_GRAPH_PARALLEL_TIME_LL)
                     || key.equals(StatisticKey.SAT_SERIALIZATION_TIME)) {
                 long oldValue = statistic.get(key);
                 if (value > oldValue) {
@@ -79,6 +153,29 @@ public class StatisticPrinter {
         return statistic;
     }
 
+    /**
+     * Record a value of one component, i.e. one back end solved by the
+     * ConstraintSolver. Values of the same key are overwritten.
+     *
+     * @param component
+     * @param key
+     * @param value
+     */
+    public static void recordComponent(int component, ComponentStatisticKey key, Object value) {
+        synchronized (componentStatistic) {
+            Map<ComponentStatisticKey, Object> values = componentStatistic.get(component);
+            if (values == null) {
+                values = new EnumMap<ComponentStatisticKey, Object>(ComponentStatisticKey.class);
+                componentStatistic.put(component, values);
+            }
+            values.put(key, value);
+        }
+    }
+
+    public static Map<Integer, Map<ComponentStatisticKey, Object>> getComponentStatistic() {
+        return componentStatistic;
+    }
+
     public static void printStatistic() {
         System.out.println(statistic);
     }
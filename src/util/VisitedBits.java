@@ -0,0 +1,74 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A bit set for the visited vertices of graph searches, which is reused by
+ * the searches of one thread. It remembers the words that a search sets, so
+ * clearing it for the next search only touches those words instead of the
+ * whole array, however large the graph is.
+ *
+ * @author jianchu
+ *
+ */
+public class VisitedBits {
+
+    private long[] words;
+    // indices of the non-zero words
+    private int[] touched;
+    private int numberOfTouched = 0;
+
+    /**
+     * @param size
+     *            the bits are from 0 (inclusive) to size (exclusive)
+     */
+    public VisitedBits(int size) {
+        this.words = new long[(size >>> 6) + 1];
+        this.touched = new int[16];
+    }
+
+    /**
+     * Set the bit.
+     *
+     * @param bit
+     * @return true if the bit was not set before.
+     */
+    public boolean add(int bit) {
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        long old = words[word];
+        if ((old & mask) != 0) {
+            return false;
+        }
+        if (old == 0) {
+            if (numberOfTouched == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[numberOfTouched++] = word;
+        }
+        words[word] = old | mask;
+        return true;
+    }
+
+    public boolean get(int bit) {
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Clear all bits, in time proportional to the number of words that were
+     * set since the last clear.
+     */
+    public void clear() {
+        for (int i = 0; i < numberOfTouched; i++) {
+            words[touched[i]] = 0;
+        }
+        numberOfTouched = 0;
+    }
+
+    /**
+     * @return the number of bits that can be set.
+     */
+    public int size() {
+        return words.length << 6;
+    }
+}
@@ -0,0 +1,85 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+
+public class CardinalityUtilsTest {
+
+    private static final int MAX_LITERALS = 7;
+
+    private static int[] literals(int k) {
+        int[] literals = new int[k];
+        for (int i = 0; i < k; i++) {
+            literals[i] = i + 1;
+        }
+        return literals;
+    }
+
+    private static boolean isSatisfied(List<VecInt> clauses, long assignment) {
+        for (VecInt clause : clauses) {
+            boolean satisfied = false;
+            for (int i = 0; i < clause.size() && !satisfied; i++) {
+                int literal = clause.get(i);
+                boolean value = (assignment & (1L << (Math.abs(literal) - 1))) != 0;
+                satisfied = literal > 0 ? value : !value;
+            }
+            if (!satisfied) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check that an assignment of the k literals can be extended to the
+     * auxiliary variables iff at most one of the literals is true.
+     */
+    private static void assertAtMostOne(int k, List<VecInt> clauses, int nextVar) {
+        int auxiliaryVars = nextVar - k - 1;
+        for (long literals = 0; literals < 1L << k; literals++) {
+            boolean extended = false;
+            for (long auxiliary = 0; auxiliary < 1L << auxiliaryVars && !extended; auxiliary++) {
+                extended = isSatisfied(clauses, literals | auxiliary << k);
+            }
+            assertEquals("k = " + k + ", literals = " + Long.toBinaryString(literals),
+                    Long.bitCount(literals) <= 1, extended);
+        }
+    }
+
+    @Test
+    public void pairwise() {
+        for (int k = 1; k <= MAX_LITERALS; k++) {
+            List<VecInt> clauses = new ArrayList<VecInt>();
+            CardinalityUtils.atMostOnePairwise(literals(k), clauses);
+            assertEquals(k * (k - 1) / 2, clauses.size());
+            assertAtMostOne(k, clauses, k + 1);
+        }
+    }
+
+    @Test
+    public void sequential() {
+        for (int k = 1; k <= MAX_LITERALS; k++) {
+            List<VecInt> clauses = new ArrayList<VecInt>();
+            int nextVar = CardinalityUtils.atMostOneSequential(literals(k), clauses, k + 1);
+            if (k > 1) {
+                assertEquals(3 * k - 4, clauses.size());
+                assertEquals(k + 1 + k - 1, nextVar);
+            }
+            assertAtMostOne(k, clauses, nextVar);
+        }
+    }
+
+    @Test
+    public void commander() {
+        for (int k = 1; k <= MAX_LITERALS; k++) {
+            List<VecInt> clauses = new ArrayList<VecInt>();
+            int nextVar = CardinalityUtils.atMostOneCommander(literals(k), clauses, k + 1);
+            assertAtMostOne(k, clauses, nextVar);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package maxsatbackend;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ClausePreprocessorTest {
+
+    private static ClauseArena simplify(int numberOfVars, ClauseArena clauses) {
+        return new ClausePreprocessor(numberOfVars).simplify(clauses);
+    }
+
+    @Test
+    public void removesDuplicatedHardClausesInAnyOrder() {
+        ClauseArena clauses = new ClauseArena();
+        clauses.addClause(new int[] { 3, -1, 2 }, false);
+        clauses.addClause(new int[] { 2, 3, -1 }, false);
+        clauses.addClause(new int[] { -1, 2 }, false);
+        assertEquals("hard -1 2 3\nhard -1 2\n", simplify(3, clauses).toString());
+    }
+
+    @Test
+    public void keepsDuplicatedSoftClauses() {
+        ClauseArena clauses = new ClauseArena();
+        clauses.addClause(new int[] { 1, 2 }, true);
+        clauses.addClause(new int[] { 2, 1 }, true);
+        assertEquals("soft 1 2\nsoft 1 2\n", simplify(2, clauses).toString());
+    }
+
+    @Test
+    public void removesRepeatedLiteralsAndTautologies() {
+        ClauseArena clauses = new ClauseArena();
+        clauses.addClause(new int[] { 2, 1, 2, 1 }, false);
+        clauses.addClause(new int[] { 1, 3, -1 }, false);
+        clauses.addClause(new int[] { -2, -2 }, true);
+        assertEquals("hard 1 2\nsoft -2\n", simplify(3, clauses).toString());
+    }
+
+    @Test
+    public void removesClausesSubsumedByHardUnits() {
+        ClauseArena clauses = new ClauseArena();
+        clauses.addClause(new int[] { -1 }, false);
+        clauses.addClause(new int[] { 2, -1 }, false);
+        clauses.addClause(new int[] { -1 }, true);
+        clauses.addClause(new int[] { 1, 2 }, false);
+        // the unit itself stays, a clause with its negation is not subsumed
+        assertEquals("hard -1\nhard 1 2\n", simplify(2, clauses).toString());
+    }
+}
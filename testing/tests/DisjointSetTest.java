@@ -0,0 +1,57 @@
+package constraintgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DisjointSetTest {
+
+    @Test
+    public void eachIdStartsInItsOwnSet() {
+        DisjointSet sets = new DisjointSet(4);
+        assertEquals(4, sets.size());
+        for (int id = 0; id < 4; id++) {
+            assertEquals(id, sets.find(id));
+        }
+    }
+
+    @Test
+    public void unionMergesSets() {
+        DisjointSet sets = new DisjointSet(5);
+        assertTrue(sets.union(0, 1));
+        assertTrue(sets.union(3, 4));
+        assertEquals(sets.find(0), sets.find(1));
+        assertEquals(sets.find(3), sets.find(4));
+        assertNotEquals(sets.find(1), sets.find(3));
+        assertNotEquals(sets.find(2), sets.find(0));
+
+        assertTrue(sets.union(1, 4));
+        assertEquals(sets.find(0), sets.find(3));
+        assertNotEquals(sets.find(2), sets.find(0));
+    }
+
+    @Test
+    public void unionOfTheSameSetReturnsFalse() {
+        DisjointSet sets = new DisjointSet(3);
+        assertFalse(sets.union(1, 1));
+        assertTrue(sets.union(0, 1));
+        assertTrue(sets.union(1, 2));
+        assertFalse(sets.union(2, 0));
+    }
+
+    @Test
+    public void longChain() {
+        int size = 100000;
+        DisjointSet sets = new DisjointSet(size);
+        for (int id = 1; id < size; id++) {
+            assertTrue(sets.union(id - 1, id));
+        }
+        int root = sets.find(0);
+        for (int id = 0; id < size; id++) {
+            assertEquals(root, sets.find(id));
+        }
+    }
+}
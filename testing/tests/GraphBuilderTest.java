@@ -0,0 +1,153 @@
+package constraintgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import constraintgraph.GraphBuilder.SubtypeDirection;
+
+/**
+ * The options of GraphBuilder must give the same independent paths and
+ * constant paths as the BFS over the graph with the recursive addEdges.
+ */
+public class GraphBuilderTest {
+
+    private static final int SEEDS = 50;
+
+    /**
+     * A random constraint set, where no two constraints have the same pair
+     * of slots.
+     */
+    private static List<Constraint> randomConstraints(long seed) {
+        Random random = new Random(seed);
+        int size = 2 + random.nextInt(40);
+        List<VariableSlot> slots = new ArrayList<VariableSlot>();
+        for (int id = 1; id <= size; id++) {
+            slots.add(random.nextInt(5) == 0 ? new ConstantSlot(null, id) : new VariableSlot(id));
+        }
+        List<Constraint> constraints = new ArrayList<Constraint>();
+        Set<String> pairs = new HashSet<String>();
+        for (int i = random.nextInt(3 * size); i > 0; i--) {
+            VariableSlot first = slots.get(random.nextInt(size));
+            VariableSlot second = slots.get(random.nextInt(size));
+            if (first == second || !pairs.add(pair(first, second))) {
+                continue;
+            }
+            switch (random.nextInt(3)) {
+            case 0:
+                constraints.add(new SubtypeConstraint(first, second));
+                break;
+            case 1:
+                constraints.add(new EqualityConstraint(first, second));
+                break;
+            default:
+                VariableSlot result = slots.get(random.nextInt(size));
+                if (result instanceof ConstantSlot || result == first || result == second
+                        || !pairs.add(pair(first, result)) || !pairs.add(pair(second, result))) {
+                    continue;
+                }
+                constraints.add(new CombineConstraint(first, second, result));
+            }
+        }
+        return constraints;
+    }
+
+    private static String pair(VariableSlot first, VariableSlot second) {
+        return Math.min(first.getId(), second.getId()) + "-" + Math.max(first.getId(), second.getId());
+    }
+
+    private static GraphBuilder builder(List<Constraint> constraints, SubtypeDirection direction,
+            String... options) {
+        GraphBuilder builder = new GraphBuilder(new ArrayList<Slot>(), constraints, direction);
+        for (String option : options) {
+            if (option.equals("useUnionFind")) {
+                builder.setUseUnionFind(true);
+            } else if (option.equals("useStarEdges")) {
+                builder.setUseStarEdges(true);
+            } else if (option.equals("useCompactGraph")) {
+                builder.setUseCompactGraph(true);
+            }
+        }
+        builder.buildGraph();
+        return builder;
+    }
+
+    private static Set<Set<Constraint>> independentPaths(GraphBuilder builder) {
+        return new HashSet<Set<Constraint>>(builder.getGraph().getIndependentPath());
+    }
+
+    // the vertices of a frozen graph are only equal by slot id
+    private static Map<Integer, Set<Constraint>> constantPaths(GraphBuilder builder) {
+        Map<Integer, Set<Constraint>> constantPaths = new HashMap<Integer, Set<Constraint>>();
+        for (Map.Entry<Vertex, Set<Constraint>> entry : builder.getGraph().getConstantPath().entrySet()) {
+            constantPaths.put(entry.getKey().getId(), entry.getValue());
+        }
+        return constantPaths;
+    }
+
+    private static void assertSamePaths(String... options) {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            List<Constraint> constraints = randomConstraints(seed);
+            for (SubtypeDirection direction : SubtypeDirection.values()) {
+                GraphBuilder expected = builder(constraints, direction);
+                GraphBuilder actual = builder(constraints, direction, options);
+                String message = Arrays.toString(options) + ", seed " + seed + ", " + direction;
+                assertEquals(message, independentPaths(expected), independentPaths(actual));
+                assertEquals(message, constantPaths(expected), constantPaths(actual));
+            }
+        }
+    }
+
+    @Test
+    public void unionFindGivesTheSamePaths() {
+        assertSamePaths("useUnionFind");
+    }
+
+    @Test
+    public void starEdgesGiveTheSamePaths() {
+        assertSamePaths("useStarEdges");
+    }
+
+    @Test
+    public void allOptionsGiveTheSamePaths() {
+        assertSamePaths("useUnionFind", "useStarEdges", "useCompactGraph");
+    }
+
+    /**
+     * The BFS graph keeps one edge per pair of vertices, so the second
+     * constraint on the same slots is in no independent path, while the
+     * union-find puts it with the first one.
+     */
+    @Test
+    public void unionFindKeepsConstraintsOnTheSameSlots() {
+        VariableSlot first = new VariableSlot(1);
+        VariableSlot second = new VariableSlot(2);
+        Constraint subtype = new SubtypeConstraint(first, second);
+        Constraint equality = new EqualityConstraint(first, second);
+        List<Constraint> constraints = Arrays.asList(subtype, equality);
+
+        Set<Set<Constraint>> bfs = independentPaths(builder(constraints, SubtypeDirection.UNDIRECTED));
+        Set<Set<Constraint>> unionFind = independentPaths(builder(constraints,
+                SubtypeDirection.UNDIRECTED, "useUnionFind"));
+        assertEquals(1, unionFind.size());
+        assertEquals(new HashSet<Constraint>(constraints), unionFind.iterator().next());
+        assertNotEquals(bfs, unionFind);
+    }
+}
@@ -0,0 +1,74 @@
+package maxsatbackend;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class SolverOutputParserTest {
+
+    private static BitSet variables(int... vars) {
+        BitSet variables = new BitSet();
+        for (int var : vars) {
+            variables.set(var);
+        }
+        return variables;
+    }
+
+    private static SolverOutputParser parse(BitSet variables, int numberOfVars, String output)
+            throws IOException {
+        SolverOutputParser parser = new SolverOutputParser(variables, numberOfVars);
+        parser.parse(new ByteArrayInputStream(output.getBytes(StandardCharsets.US_ASCII)));
+        return parser;
+    }
+
+    @Test
+    public void literalsOverSeveralLines() throws IOException {
+        SolverOutputParser parser = parse(variables(1, 2, 3, 4), 4,
+                "c comment 1 2\no 7\no 3\ns OPTIMUM FOUND\nv 1 -2\nv 3 -4 0\n");
+        assertEquals("OPTIMUM FOUND", parser.getStatus());
+        assertEquals(3, parser.getCost());
+        assertArrayEquals(new int[] { 1, -2, 3, -4 }, parser.getModel());
+    }
+
+    @Test
+    public void onlyTheVariablesOfTheInput() throws IOException {
+        // 5 and 6 are selector variables of the solver
+        SolverOutputParser parser = parse(variables(1, 3), 6, "s SATISFIABLE\nv -1 2 3 -5 6 0");
+        assertArrayEquals(new int[] { -1, 3 }, parser.getModel());
+        assertEquals(-1, parser.getCost());
+    }
+
+    @Test
+    public void bitString() throws IOException {
+        SolverOutputParser parser = parse(variables(1, 2, 4), 4, "s OPTIMUM FOUND\nv 0110\n");
+        assertArrayEquals(new int[] { -1, 2, -4 }, parser.getModel());
+    }
+
+    @Test
+    public void bitStringLengthMustMatchTheNumberOfVariables() throws IOException {
+        // with 11 variables, 10 is the literal of variable 10
+        SolverOutputParser parser = parse(variables(1, 10), 11, "v 10 -1\n");
+        assertArrayEquals(new int[] { 10, -1 }, parser.getModel());
+    }
+
+    @Test
+    public void wordsAreIgnored() throws IOException {
+        SolverOutputParser parser = parse(variables(1, 2), 2, "v x1 -2 ok\r\ns UNSATISFIABLE\r\n");
+        assertArrayEquals(new int[] { -2 }, parser.getModel());
+        assertEquals("UNSATISFIABLE", parser.getStatus());
+    }
+
+    @Test
+    public void emptyOutput() throws IOException {
+        SolverOutputParser parser = parse(variables(1), 1, "");
+        assertNull(parser.getStatus());
+        assertEquals(0, parser.getModel().length);
+    }
+}
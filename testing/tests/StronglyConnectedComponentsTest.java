@@ -0,0 +1,66 @@
+package constraintgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class StronglyConnectedComponentsTest {
+
+    private static StronglyConnectedComponents scc(int size, int[]... edges) {
+        int[] edgeFrom = new int[edges.length];
+        int[] edgeTo = new int[edges.length];
+        for (int e = 0; e < edges.length; e++) {
+            edgeFrom[e] = edges[e][0];
+            edgeTo[e] = edges[e][1];
+        }
+        return new StronglyConnectedComponents(size, edgeFrom, edgeTo, edges.length);
+    }
+
+    @Test
+    public void graphWithoutEdges() {
+        StronglyConnectedComponents components = scc(3);
+        assertEquals(3, components.getNumberOfComponents());
+        assertNotEquals(components.getComponent(0), components.getComponent(1));
+        assertNotEquals(components.getComponent(1), components.getComponent(2));
+    }
+
+    @Test
+    public void cyclesAndBridges() {
+        // 0 -> 1 -> 2 -> 0 is a cycle, 2 -> 3, 3 <-> 4, 5 alone
+        StronglyConnectedComponents components = scc(6, new int[] { 0, 1 }, new int[] { 1, 2 },
+                new int[] { 2, 0 }, new int[] { 2, 3 }, new int[] { 3, 4 }, new int[] { 4, 3 });
+        assertEquals(3, components.getNumberOfComponents());
+        assertEquals(components.getComponent(0), components.getComponent(1));
+        assertEquals(components.getComponent(1), components.getComponent(2));
+        assertEquals(components.getComponent(3), components.getComponent(4));
+        assertNotEquals(components.getComponent(2), components.getComponent(3));
+        assertNotEquals(components.getComponent(4), components.getComponent(5));
+    }
+
+    @Test
+    public void selfLoopsAndParallelEdges() {
+        StronglyConnectedComponents components = scc(2, new int[] { 0, 0 }, new int[] { 0, 1 },
+                new int[] { 0, 1 });
+        assertEquals(2, components.getNumberOfComponents());
+        assertNotEquals(components.getComponent(0), components.getComponent(1));
+    }
+
+    @Test
+    public void longChainDoesNotOverflowTheStack() {
+        int size = 100000;
+        int[] edgeFrom = new int[size];
+        int[] edgeTo = new int[size];
+        for (int v = 0; v < size; v++) {
+            edgeFrom[v] = v;
+            edgeTo[v] = (v + 1) % size;
+        }
+        // a path first, then closed into one cycle by the last edge
+        assertEquals(size, new StronglyConnectedComponents(size, edgeFrom, edgeTo, size - 1)
+                .getNumberOfComponents());
+        StronglyConnectedComponents cycle = new StronglyConnectedComponents(size, edgeFrom, edgeTo,
+                size);
+        assertEquals(1, cycle.getNumberOfComponents());
+        assertEquals(cycle.getComponent(0), cycle.getComponent(size - 1));
+    }
+}
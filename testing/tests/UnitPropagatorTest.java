@@ -0,0 +1,142 @@
+package maxsatbackend;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+
+public class UnitPropagatorTest {
+
+    private static ClauseArena hard(int[]... clauses) {
+        ClauseArena arena = new ClauseArena();
+        for (int[] clause : clauses) {
+            arena.addClause(clause, false);
+        }
+        return arena;
+    }
+
+    private static List<VecInt> groups(int[]... groups) {
+        List<VecInt> result = new ArrayList<VecInt>();
+        for (int[] group : groups) {
+            result.add(new VecInt(group));
+        }
+        return result;
+    }
+
+    private static int[] sorted(int[] literals) {
+        int[] copy = literals.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void complementaryUnitsConflict() {
+        UnitPropagator propagator = new UnitPropagator(2);
+        assertFalse(propagator.propagate(hard(new int[] { 1 }, new int[] { 2 }, new int[] { -1 }),
+                Collections.<VecInt> emptyList()));
+    }
+
+    @Test
+    public void propagatedUnitsConflict() {
+        // 1 forces 2 and 3 forces -2
+        UnitPropagator propagator = new UnitPropagator(3);
+        assertFalse(propagator.propagate(
+                hard(new int[] { 1 }, new int[] { 3 }, new int[] { -1, 2 }, new int[] { -3, -2 }),
+                Collections.<VecInt> emptyList()));
+    }
+
+    @Test
+    public void exactlyOneForcesLastLiteral() {
+        UnitPropagator propagator = new UnitPropagator(3);
+        assertTrue(propagator.propagate(hard(new int[] { -1 }, new int[] { -2 }),
+                groups(new int[] { 1, 2, 3 })));
+        assertTrue(propagator.isSolved());
+        assertEquals(3, propagator.getNumberOfFixedVars());
+        assertArrayEquals(new int[] { -2, -1, 3 }, sorted(propagator.getModel(new int[0])));
+    }
+
+    @Test
+    public void exactlyOneTrueLiteralFalsifiesTheOthers() {
+        UnitPropagator propagator = new UnitPropagator(3);
+        assertTrue(propagator.propagate(hard(new int[] { 2 }), groups(new int[] { 1, 2, 3 })));
+        assertTrue(propagator.isSolved());
+        assertArrayEquals(new int[] { -3, -1, 2 }, sorted(propagator.getModel(new int[0])));
+    }
+
+    @Test
+    public void exactlyOneWithTwoTrueLiteralsConflicts() {
+        UnitPropagator propagator = new UnitPropagator(3);
+        assertFalse(propagator.propagate(hard(new int[] { 1 }, new int[] { 3 }),
+                groups(new int[] { 1, 2, 3 })));
+    }
+
+    @Test
+    public void exactlyOneWithAllLiteralsFalseConflicts() {
+        UnitPropagator propagator = new UnitPropagator(2);
+        assertFalse(propagator.propagate(hard(new int[] { -1 }, new int[] { -2 }),
+                groups(new int[] { 1, 2 })));
+    }
+
+    @Test
+    public void repeatedLiteralsForceTheOtherLiteral() {
+        UnitPropagator propagator = new UnitPropagator(2);
+        assertTrue(propagator.propagate(hard(new int[] { 1, 1, 2 }, new int[] { -1 }),
+                Collections.<VecInt> emptyList()));
+        assertTrue(propagator.isSolved());
+        assertArrayEquals(new int[] { -1, 2 }, sorted(propagator.getModel(new int[0])));
+    }
+
+    @Test
+    public void repeatedFalseLiteralsConflict() {
+        UnitPropagator propagator = new UnitPropagator(1);
+        assertFalse(propagator.propagate(hard(new int[] { 1, 1 }, new int[] { -1 }),
+                Collections.<VecInt> emptyList()));
+    }
+
+    @Test
+    public void residualDropsSatisfiedClausesAndFalseLiterals() {
+        UnitPropagator propagator = new UnitPropagator(4);
+        assertTrue(propagator.propagate(
+                hard(new int[] { -1 }, new int[] { 1, 2, 3 }, new int[] { -1, 4 }, new int[] { 2, 4 }),
+                groups(new int[] { 1, 3, 4 })));
+        assertFalse(propagator.isSolved());
+        ClauseArena residual = propagator.getResidualClauses();
+        assertEquals(2, residual.size());
+        assertEquals("hard 2 3\nhard 2 4\n", residual.toString());
+        assertEquals(1, propagator.getResidualExactlyOne().size());
+        assertEquals(new VecInt(new int[] { 3, 4 }), propagator.getResidualExactlyOne().get(0));
+    }
+
+    @Test
+    public void softClausesAreNotPropagated() {
+        ClauseArena clauses = hard(new int[] { -1 });
+        clauses.addClause(new int[] { 2 }, true);
+        clauses.addClause(new int[] { 1 }, true);
+        UnitPropagator propagator = new UnitPropagator(2);
+        assertTrue(propagator.propagate(clauses, Collections.<VecInt> emptyList()));
+        assertEquals(1, propagator.getNumberOfFixedVars());
+        // the soft unit 2 is still open, the soft unit 1 can not be satisfied
+        assertEquals("soft 2\n", propagator.getResidualClauses().toString());
+    }
+
+    @Test
+    public void modelMergesFixedLiteralsWithResidualModel() {
+        ClauseArena clauses = hard(new int[] { 1 }, new int[] { 2, 3 });
+        clauses.addClause(new int[] { -2 }, true);
+        UnitPropagator propagator = new UnitPropagator(3);
+        assertTrue(propagator.propagate(clauses, Collections.<VecInt> emptyList()));
+        assertFalse(propagator.isSolved());
+        // the MaxSat solver adds selector variables 4 and 5 for the soft
+        // clauses, and reports a value for the fixed variable 1 too
+        int[] model = propagator.getModel(new int[] { -1, -2, 3, 4, -5 });
+        assertArrayEquals(new int[] { -5, -2, 1, 3, 4 }, sorted(model));
+    }
+}